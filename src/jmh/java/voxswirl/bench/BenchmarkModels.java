@@ -0,0 +1,42 @@
+package voxswirl.bench;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import voxswirl.io.VoxIO;
+import voxswirl.io.VoxModel;
+import voxswirl.physical.Tools3D;
+
+import java.io.File;
+
+/**
+ * Loads the bundled .vox models for benchmarks. Models are read from the folder in the {@code voxswirl.vox} system
+ * property, or {@code vox/} relative to the working directory if it isn't set; because JMH forks a new JVM, set it
+ * with {@code -jvmArgs -Dvoxswirl.vox=...} rather than on the outer command line.
+ */
+public final class BenchmarkModels {
+    private BenchmarkModels() {
+    }
+
+    public static File file(String name) {
+        return new File(System.getProperty("voxswirl.vox", "vox"), name);
+    }
+
+    /**
+     * Reads a model and prepares it the way {@link voxswirl.app.VoxSwirl} does: each doubling runs
+     * {@link Tools3D#blockyScale(byte[][][])} once, and the result is soaked with {@link Tools3D#soakInPlace(byte[][][])}.
+     * @param name a file name in the model folder, such as {@code "Tree.vox"}
+     * @param doublings how many times to double the size of the model on each axis
+     * @return a VoxModel with the prepared voxels and the file's palette and materials
+     */
+    public static VoxModel load(String name, int doublings) {
+        File file = file(name);
+        VoxModel model = VoxIO.readVoxModelMapped(file.getPath());
+        if(model == null)
+            throw new GdxRuntimeException("Could not load " + file.getAbsolutePath());
+        byte[][][] voxels = model.voxels;
+        for (int i = 0; i < doublings; i++) {
+            voxels = Tools3D.blockyScale(voxels);
+        }
+        Tools3D.soakInPlace(voxels);
+        return model.withVoxels(voxels);
+    }
+}
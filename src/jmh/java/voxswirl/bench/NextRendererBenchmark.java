@@ -0,0 +1,70 @@
+package voxswirl.bench;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import org.openjdk.jmh.annotations.*;
+import voxswirl.io.VoxModel;
+import voxswirl.physical.DenseVoxels;
+import voxswirl.physical.VoxelGrid;
+import voxswirl.visual.NextRenderer;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tommyettinger.colorful.TrigTools.cos_;
+import static com.github.tommyettinger.colorful.TrigTools.sin_;
+
+/**
+ * Times only {@link NextRenderer#blit()}, the lighting pass, by splatting the model before each invocation. This
+ * renderer keeps a 3D light volume three times the model's size on each axis, so models are not doubled here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NextRendererBenchmark {
+    @Param({"Floor.vox", "Bear.vox", "Lomuk.vox", "Tree.vox"})
+    public String model;
+
+    private VoxModel vox;
+    private VoxelGrid grid;
+    private NextRenderer renderer;
+    private int frame;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GdxNativesLoader.load();
+        vox = BenchmarkModels.load(model, 0);
+        grid = new DenseVoxels(vox.voxels);
+        renderer = new NextRenderer(vox.voxels.length);
+        renderer.palette(vox.palette);
+    }
+
+    @Setup(Level.Invocation)
+    public void splat() {
+        final int size = grid.sizeX();
+        final float hs = size * 0.5f;
+        final float turns = (frame++ & 63) * 0x1p-6f;
+        final float c = cos_(turns), s = sin_(turns);
+        renderer.materialMap = vox.materials;
+        renderer.materialTable.set(vox.materials);
+        renderer.clear();
+        grid.forEach(new VoxelGrid.Visitor() {
+            @Override
+            public void visit(int x, int y, int z, byte v) {
+                renderer.splat((x - hs) * c - (y - hs) * s + size, (x - hs) * s + (y - hs) * c + size, z, v);
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        renderer.pixmap.dispose();
+    }
+
+    @Benchmark
+    public Pixmap blit() {
+        return renderer.blit();
+    }
+}
@@ -0,0 +1,85 @@
+package voxswirl.bench;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import org.openjdk.jmh.annotations.*;
+import voxswirl.io.VoxModel;
+import voxswirl.physical.DenseVoxels;
+import voxswirl.physical.SparseVoxels;
+import voxswirl.physical.VoxelGrid;
+import voxswirl.visual.RotatingRenderer;
+import voxswirl.visual.SmudgeRenderer;
+import voxswirl.visual.SplatRenderer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times one frame of each yaw-only renderer, plus {@link RotatingRenderer} with pitch and roll. Each invocation
+ * advances the angle by 1/64 of a turn, like a turntable animation, so the average covers every view of the model.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RendererBenchmark {
+    @Param({"Floor.vox", "Bear.vox", "Lomuk.vox", "Tree.vox", "libGDX_BadLogic_Half.vox"})
+    public String model;
+
+    @Param({"0", "1"})
+    public int doublings;
+
+    @Param({"dense", "sparse"})
+    public String storage;
+
+    private VoxModel vox;
+    private VoxelGrid grid;
+    private SmudgeRenderer smudge;
+    private SplatRenderer splat;
+    private RotatingRenderer rotating;
+    private int frame;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GdxNativesLoader.load();
+        vox = BenchmarkModels.load(model, doublings);
+        grid = "sparse".equals(storage) ? SparseVoxels.from(vox.voxels) : new DenseVoxels(vox.voxels);
+        final int size = vox.voxels.length;
+        smudge = new SmudgeRenderer(size);
+        smudge.palette(vox.palette);
+        smudge.saturation(0f);
+        smudge.outline = true;
+        splat = new SplatRenderer(size);
+        splat.palette(vox.palette);
+        rotating = new RotatingRenderer(size);
+        rotating.palette(vox.palette);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        smudge.pixmap.dispose();
+        splat.pixmap.dispose();
+        rotating.pixmap.dispose();
+    }
+
+    private float turns() {
+        return (frame++ & 63) * 0x1p-6f;
+    }
+
+    @Benchmark
+    public Pixmap smudgeDrawSplats() {
+        return smudge.drawSplats(grid, turns(), vox.materials);
+    }
+
+    @Benchmark
+    public Pixmap splatDrawSplats() {
+        return splat.drawSplats(grid, turns(), vox.materials);
+    }
+
+    @Benchmark
+    public Pixmap rotatingDrawSplats() {
+        final float turns = turns();
+        return rotating.drawSplats(grid, turns, turns * 0.5f, turns * 0.25f, vox.materials);
+    }
+}
@@ -0,0 +1,82 @@
+package voxswirl.bench;
+
+import org.openjdk.jmh.annotations.*;
+import voxswirl.physical.Occupancy;
+import voxswirl.physical.SurfaceVoxels;
+import voxswirl.physical.Tools3D;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the Tools3D passes that {@link voxswirl.app.VoxSwirl} runs on a model before rendering it. Methods that
+ * change their input are given a fresh copy of the model before each invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class Tools3DBenchmark {
+    @Param({"Floor.vox", "Bear.vox", "Lomuk.vox", "Tree.vox", "libGDX_BadLogic_Half.vox"})
+    public String model;
+
+    @Param({"0", "1"})
+    public int doublings;
+
+    private byte[][][] voxels;
+    private byte[][][] scratch;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        voxels = BenchmarkModels.load(model, doublings).voxels;
+        scratch = Tools3D.deepCopy(voxels);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        Tools3D.deepCopyInto(voxels, scratch);
+    }
+
+    @Benchmark
+    public byte[][][] blockyScale() {
+        return Tools3D.blockyScale(voxels);
+    }
+
+    @Benchmark
+    public byte[][][] soakInPlace() {
+        Tools3D.soakInPlace(scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public byte[][][] soakInPlaceParallel() {
+        Tools3D.soakInPlaceParallel(scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public Occupancy occupancy() {
+        return new Occupancy(voxels);
+    }
+
+    @Benchmark
+    public SurfaceVoxels surface() {
+        return Tools3D.surface(voxels);
+    }
+
+    @Benchmark
+    public byte[][][] smoothScale() {
+        return Tools3D.smoothScale(voxels);
+    }
+
+    @Benchmark
+    public byte[][][] runCA() {
+        return Tools3D.runCA(voxels, 1);
+    }
+
+    @Benchmark
+    public byte[][][] largestPart() {
+        return Tools3D.largestPart(voxels);
+    }
+}
@@ -0,0 +1,69 @@
+package voxswirl.bench;
+
+import org.openjdk.jmh.annotations.*;
+import voxswirl.io.VoxIO;
+import voxswirl.io.VoxModel;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times reading and writing .vox files. Reads from a stream or buffer use bytes already in memory, so they measure
+ * parsing rather than the disk; {@link #readVoxModelMapped()} and {@link #writeVOX()} go through the file system.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VoxIOBenchmark {
+    @Param({"Floor.vox", "Bear.vox", "Lomuk.vox", "Tree.vox", "libGDX_BadLogic_Half.vox"})
+    public String model;
+
+    private String path;
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private VoxModel vox;
+    private File output;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File file = BenchmarkModels.file(model);
+        path = file.getPath();
+        bytes = Files.readAllBytes(file.toPath());
+        buffer = ByteBuffer.wrap(bytes);
+        vox = VoxIO.readVoxModel(buffer.duplicate());
+        output = File.createTempFile("voxswirl-bench", ".vox");
+        output.deleteOnExit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Benchmark
+    public byte[][][] readVox() {
+        return VoxIO.readVox(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public VoxModel readVoxModel() {
+        return VoxIO.readVoxModel(buffer.duplicate());
+    }
+
+    @Benchmark
+    public VoxModel readVoxModelMapped() {
+        return VoxIO.readVoxModelMapped(path);
+    }
+
+    @Benchmark
+    public void writeVOX() {
+        VoxIO.writeVOX(output.getPath(), vox.voxels, vox.palette, vox.materials);
+    }
+}
@@ -0,0 +1,167 @@
+package voxswirl.app;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntMap;
+import voxswirl.physical.DenseVoxels;
+import voxswirl.physical.MaterialTable;
+import voxswirl.physical.VoxMaterial;
+import voxswirl.physical.VoxelGrid;
+import voxswirl.visual.PreparedModel;
+import voxswirl.visual.RendererPool;
+import voxswirl.visual.SmudgeRenderer;
+
+import java.util.concurrent.*;
+
+/**
+ * Renders the frames of a turntable animation on several threads at once, then hands them back in order.
+ * A {@link SmudgeRenderer} keeps all of its work in per-pixel buffers, so one renderer can only draw one frame at a
+ * time; this gives each frame a renderer from a {@link RendererPool} and copies the settings of a shared "template"
+ * renderer into it, so every frame looks exactly as it would if the template had drawn it. Renderers go back to the
+ * pool after each frame, so later models with the same size reuse them instead of allocating new buffers.
+ * <br>
+ * Worker threads are daemon threads, but you should still call {@link #dispose()} when done to free the Pixmaps that
+ * the pooled renderers hold.
+ */
+public class FrameScheduler implements Disposable {
+    public final int threads;
+    public final RendererPool pool;
+    private final ExecutorService executor;
+    private final boolean ownsPool;
+
+    /**
+     * Uses one thread per available processor.
+     */
+    public FrameScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Uses its own {@link RendererPool}, which {@link #dispose()} disposes.
+     * @param threads how many frames to render at the same time
+     */
+    public FrameScheduler(int threads) {
+        this(threads, null);
+    }
+
+    /**
+     * @param threads how many frames to render at the same time
+     * @param pool where to get renderers from and return them to; if null, this makes its own pool and disposes it in
+     *             {@link #dispose()}, otherwise the caller is responsible for disposing the pool
+     */
+    public FrameScheduler(int threads, RendererPool pool) {
+        this.threads = Math.max(1, threads);
+        this.ownsPool = pool == null;
+        this.pool = pool == null ? new RendererPool(this.threads) : pool;
+        executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+            private int count = 0;
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "voxswirl-render-" + count++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private SmudgeRenderer renderer(SmudgeRenderer template) {
+        return pool.obtain(template.size, template.shrink).set(template);
+    }
+
+    public Array<Pixmap> render(final byte[][][] voxels, final IntMap<VoxMaterial> materials,
+                                final SmudgeRenderer template, final int frames) {
+        return render(new DenseVoxels(voxels), materials, template, frames);
+    }
+
+    /**
+     * Renders {@code frames} evenly-spaced yaw angles of {@code voxels}, drawing each one like {@code template} would.
+     * Each returned Pixmap is a new copy that the caller is responsible for disposing.
+     * @param voxels a cube of voxels, as used by {@link SmudgeRenderer#drawSplats(VoxelGrid, float, IntMap)}; must not be modified until this returns
+     * @param materials the materials for voxels' palette indices, often from {@link voxswirl.io.VoxModel#materials};
+     *                  these are looked up once into a {@link MaterialTable} shared by every frame
+     * @param template a renderer with the same size as voxels, already configured with a palette, saturation, and shrink
+     * @param frames how many frames to render; frame {@code i} uses a yaw of {@code i / frames} turns
+     * @return an Array of {@code frames} new Pixmaps, in order of increasing yaw
+     */
+    public Array<Pixmap> render(final VoxelGrid voxels, final IntMap<VoxMaterial> materials,
+                                final SmudgeRenderer template, final int frames) {
+        final MaterialTable table = new MaterialTable(materials, template.defaultMaterial);
+        Array<Future<Pixmap>> futures = new Array<>(frames);
+        for (int i = 0; i < frames; i++) {
+            final float turns = i / (float) frames;
+            futures.add(executor.submit(new Callable<Pixmap>() {
+                @Override
+                public Pixmap call() {
+                    final SmudgeRenderer r = renderer(template);
+                    try {
+                        return copy(r.drawSplats(voxels, turns, table));
+                    } finally {
+                        pool.free(r);
+                    }
+                }
+            }));
+        }
+        return collect(futures);
+    }
+
+    /**
+     * Renders {@code frames} evenly-spaced yaw angles of a {@link PreparedModel}, drawing each one like
+     * {@code template} would. This is the fastest way to render a turntable, since the model's hidden voxels and
+     * material lookups were handled once when it was prepared. Each returned Pixmap is a new copy that the caller is
+     * responsible for disposing.
+     * @param model a model prepared with the same size as template
+     * @param template a renderer already configured with the model's palette, saturation, and shrink
+     * @param frames how many frames to render; frame {@code i} uses a yaw of {@code i / frames} turns
+     * @return an Array of {@code frames} new Pixmaps, in order of increasing yaw
+     */
+    public Array<Pixmap> render(final PreparedModel model, final SmudgeRenderer template, final int frames) {
+        Array<Future<Pixmap>> futures = new Array<>(frames);
+        for (int i = 0; i < frames; i++) {
+            final float turns = i / (float) frames;
+            futures.add(executor.submit(new Callable<Pixmap>() {
+                @Override
+                public Pixmap call() {
+                    final SmudgeRenderer r = renderer(template);
+                    try {
+                        return copy(r.drawSplats(model, turns));
+                    } finally {
+                        pool.free(r);
+                    }
+                }
+            }));
+        }
+        return collect(futures);
+    }
+
+    private static Pixmap copy(Pixmap pixmap) {
+        Pixmap p = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), pixmap.getFormat());
+        p.drawPixmap(pixmap, 0, 0);
+        return p;
+    }
+
+    private static Array<Pixmap> collect(Array<Future<Pixmap>> futures) {
+        Array<Pixmap> pm = new Array<>(futures.size);
+        try {
+            for (int i = 0; i < futures.size; i++) {
+                pm.add(futures.get(i).get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            for (Future<Pixmap> f : futures) {
+                f.cancel(true);
+            }
+            for (Pixmap p : pm) {
+                p.dispose();
+            }
+            throw new GdxRuntimeException("Could not render frames", e);
+        }
+        return pm;
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+        if(ownsPool) pool.dispose();
+    }
+}
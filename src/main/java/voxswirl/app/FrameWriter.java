@@ -0,0 +1,199 @@
+package voxswirl.app;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.github.tommyettinger.anim8.AnimatedGif;
+import com.github.tommyettinger.anim8.Dithered;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes rendered frames as PNG files and an animated GIF on a separate pool of threads, so rendering can continue
+ * while earlier frames are being compressed. Each writer thread has its own {@link PixmapIO.PNG} and
+ * {@link AnimatedGif}, since neither can be shared between threads.
+ * <br>
+ * Memory is bounded by {@link #maxFrames}: {@link #reserve(int)} blocks until that many frames can be held without
+ * going over the limit, and frames only stop counting against it once every file made from them has been written and
+ * they have been disposed. Call {@link #reserve(int)} before rendering an animation, then pass the rendered frames to
+ * {@link #submit(Array, FileHandle, String, int)}, which takes ownership of them.
+ */
+public class FrameWriter implements Disposable {
+    public final int threads;
+    public final int maxFrames;
+    public Dithered.DitherAlgorithm ditherAlgorithm = Dithered.DitherAlgorithm.NEUE;
+    public float ditherStrength = 0.625f;
+    private final ExecutorService executor;
+    private final Semaphore frameBudget;
+    private final AtomicInteger failures = new AtomicInteger(0);
+    private final ThreadLocal<PixmapIO.PNG> pngs = new ThreadLocal<PixmapIO.PNG>() {
+        @Override
+        protected PixmapIO.PNG initialValue() {
+            return new PixmapIO.PNG();
+        }
+    };
+    private final ThreadLocal<AnimatedGif> gifs = new ThreadLocal<AnimatedGif>() {
+        @Override
+        protected AnimatedGif initialValue() {
+            return new AnimatedGif();
+        }
+    };
+
+    /**
+     * @param threads how many threads will write files at the same time
+     * @param maxFrames how many frames can be waiting to be written at once; must be at least as many as one animation has
+     */
+    public FrameWriter(int threads, int maxFrames) {
+        this.threads = Math.max(1, threads);
+        this.maxFrames = Math.max(1, maxFrames);
+        frameBudget = new Semaphore(this.maxFrames, true);
+        executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+            private int count = 0;
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "voxswirl-write-" + count++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Blocks until {@code frames} more frames can be held in memory without going over {@link #maxFrames}. Each call
+     * must be followed by a call to {@link #submit(Array, FileHandle, String, int)} with that many frames, which
+     * returns the reservation once those frames are written, or by {@link #release(int)} if they can't be rendered.
+     * @param frames how many frames will be rendered and then submitted
+     */
+    public void reserve(int frames) {
+        if(frames > maxFrames)
+            throw new IllegalArgumentException("Cannot reserve " + frames + " frames; maxFrames is " + maxFrames);
+        try {
+            frameBudget.acquire(frames);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while waiting to write frames", e);
+        }
+    }
+
+    /**
+     * Gives back frames reserved with {@link #reserve(int)} that will not be submitted after all, such as when
+     * rendering them failed. Call this instead of {@link #submit(Array, FileHandle, String, int)}, never as well.
+     * @param frames how many frames were reserved and will not be submitted
+     */
+    public void release(int frames) {
+        frameBudget.release(frames);
+    }
+
+    /**
+     * Queues each frame to be written to {@code directory/name_angleN.png} and all frames together to be written to
+     * {@code directory/name.gif}. This returns immediately; the frames are disposed after all of those files have
+     * been written, so they must not be used by the caller after this is called.
+     * @param frames frames previously reserved with {@link #reserve(int)}; this takes ownership of them
+     * @param directory the folder to write into
+     * @param name the start of each file name
+     * @param fps the frame rate for the GIF
+     */
+    public void submit(final Array<Pixmap> frames, final FileHandle directory, final String name, final int fps) {
+        submit(frames, directory, name, fps, null);
+    }
+
+    /**
+     * Like {@link #submit(Array, FileHandle, String, int)}, but runs {@code whenWritten} on a writer thread once every
+     * file has been written, if none of them failed to write.
+     * @param frames frames previously reserved with {@link #reserve(int)}; this takes ownership of them
+     * @param directory the folder to write into
+     * @param name the start of each file name
+     * @param fps the frame rate for the GIF
+     * @param whenWritten run after all files are written successfully, such as to {@link RenderCache#store} them; may be null
+     */
+    public void submit(final Array<Pixmap> frames, final FileHandle directory, final String name, final int fps,
+                       final Runnable whenWritten) {
+        final int count = frames.size;
+        final AtomicInteger remaining = new AtomicInteger(count + 1);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        for (int i = 0; i < count; i++) {
+            final Pixmap frame = frames.get(i);
+            final FileHandle file = directory.child(name + "_angle" + i + ".png");
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean written = false;
+                    try {
+                        pngs.get().write(file, frame);
+                        written = true;
+                    } catch (IOException | GdxRuntimeException e) {
+                        e.printStackTrace();
+                    } finally {
+                        finish(frames, remaining, failed, written, whenWritten);
+                    }
+                }
+            });
+        }
+        final FileHandle gifFile = directory.child(name + ".gif");
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean written = false;
+                try {
+                    AnimatedGif gif = gifs.get();
+                    gif.setDitherAlgorithm(ditherAlgorithm);
+                    gif.setDitherStrength(ditherStrength);
+                    gif.write(gifFile, frames, fps);
+                    written = true;
+                } catch (GdxRuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    finish(frames, remaining, failed, written, whenWritten);
+                }
+            }
+        });
+    }
+
+    /**
+     * Called once by each file's task, whether or not it wrote its file. Any exception, not just the ones caught above,
+     * leaves written false, so whenWritten only runs if every file was written completely.
+     */
+    private void finish(Array<Pixmap> frames, AtomicInteger remaining, AtomicBoolean failed, boolean written,
+                        Runnable whenWritten) {
+        if(!written) {
+            failures.incrementAndGet();
+            failed.set(true);
+        }
+        if(remaining.decrementAndGet() == 0) {
+            for (Pixmap p : frames) {
+                p.dispose();
+            }
+            try {
+                if(whenWritten != null && !failed.get())
+                    whenWritten.run();
+            } finally {
+                frameBudget.release(frames.size);
+            }
+        }
+    }
+
+    /**
+     * Blocks until every submitted frame has been written and disposed.
+     * @return how many files have failed to write since this FrameWriter was created
+     */
+    public int await() {
+        reserve(maxFrames);
+        frameBudget.release(maxFrames);
+        return failures.get();
+    }
+
+    /**
+     * Waits for all submitted frames to be written with {@link #await()}, then stops the writer threads.
+     */
+    @Override
+    public void dispose() {
+        await();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,27 @@
+package voxswirl.app;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+/**
+ * Runs the same batch render as {@link VoxSwirl}, but without opening a window or creating a GL context.
+ * Only the natives Pixmap needs are loaded, so this works on machines without any display, like build servers or
+ * containers. The process exits with status 0 if every input was rendered and written, 1 if any input failed, or 2
+ * if no inputs were given.
+ * <br>
+ * Run it with {@code java -cp voxswirl.jar voxswirl.app.HeadlessVoxSwirl model1.vox model2.vox}.
+ */
+public class HeadlessVoxSwirl {
+    public static void main(String[] args) {
+        if(args == null || args.length == 0) {
+            System.out.println("INVALID ARGUMENTS. Please supply space-separated absolute paths to .vox models.");
+            System.exit(2);
+        }
+        GdxNativesLoader.load();
+        Gdx.files = new HeadlessFiles();
+        final VoxSwirl app = new VoxSwirl(args);
+        final int failures = app.renderAll();
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
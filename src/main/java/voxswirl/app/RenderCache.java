@@ -0,0 +1,291 @@
+package voxswirl.app;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import voxswirl.physical.MaterialTable;
+import voxswirl.physical.Tools3D;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the files written for each rendered animation on disk, keyed by everything that affects them, so rendering the
+ * same model with the same settings again (in a later run, on CI, or after a deploy) copies the files instead of
+ * rendering and encoding them again. Get a key with {@link #key(byte[][][], int[], MaterialTable, Class, int, int, float, boolean, boolean)},
+ * try {@link #restore(long, File, String, int)}, and if that misses, render and write as usual, then
+ * {@link #store(long, File, String, int)} the written files.
+ * <br>
+ * Each entry is a folder in {@link #directory} named for its key, holding {@code angleN.png} for each frame and
+ * {@code animation.gif}. The folders' last-modified times record when each was last used, so once the entries take
+ * more than {@link #maxBytes}, the ones used longest ago are deleted, even across runs. All methods are thread-safe.
+ */
+public class RenderCache {
+    public final File directory;
+    public final long maxBytes;
+    /**
+     * Entry names in order of use, from least to most recent, mapped to how many bytes each takes.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Opens or creates a cache in directory, reading any entries already there.
+     * @param directory the folder to keep entries in; will be created if needed
+     * @param maxBytes how many bytes entries can take before the least recently used ones are deleted
+     */
+    public RenderCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        if(!directory.isDirectory() && !directory.mkdirs())
+            throw new GdxRuntimeException("Could not create render cache folder " + directory);
+        File[] found = directory.listFiles();
+        if(found == null) found = new File[0];
+        Arrays.sort(found, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File f : found) {
+            if(!f.isDirectory()) continue;
+            if(f.getName().endsWith(".tmp")) {
+                // left over from a store that was interrupted
+                delete(f);
+                continue;
+            }
+            final long bytes = size(f);
+            entries.put(f.getName(), bytes);
+            totalBytes += bytes;
+        }
+        synchronized (this) {
+            evict();
+        }
+    }
+
+    /**
+     * Mixed into every key; change this when renderers or writers start producing different files from the same
+     * settings, so entries stored by an older version are no longer restored.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Gets a 64-bit key for one animation, which changes if any of the given settings or any voxel changes.
+     * @param voxels the voxels as drawn, after any scaling or soaking
+     * @param palette the RGBA8888 palette given to the renderer
+     * @param materials the materials the renderer uses
+     * @param renderer the class of the renderer
+     * @param frames how many evenly spaced angles the animation has
+     * @param shrink the renderer's shrink
+     * @param neutral the renderer's {@code neutral} field, which its {@code saturation()} method sets
+     * @param outline whether the renderer draws outlines
+     * @param dither whether the renderer dithers
+     * @return a key for {@link #restore(long, File, String, int)} and {@link #store(long, File, String, int)}
+     */
+    public static long key(byte[][][] voxels, int[] palette, MaterialTable materials, Class<?> renderer,
+                           int frames, int shrink, float neutral, boolean outline, boolean dither) {
+        long h = mix(Tools3D.hash64(voxels), FORMAT_VERSION);
+        h = mix(h, voxels.length);
+        h = mix(h, voxels.length == 0 ? 0 : voxels[0].length);
+        h = mix(h, voxels.length == 0 || voxels[0].length == 0 ? 0 : voxels[0][0].length);
+        for (int c : palette) {
+            h = mix(h, c);
+        }
+        for (float t : materials.traits) {
+            h = mix(h, Float.floatToIntBits(t));
+        }
+        final String name = renderer.getName();
+        for (int i = 0; i < name.length(); i++) {
+            h = mix(h, name.charAt(i));
+        }
+        h = mix(h, frames);
+        h = mix(h, shrink);
+        h = mix(h, Float.floatToIntBits(neutral));
+        h = mix(h, (outline ? 1 : 0) | (dither ? 2 : 0));
+        return h;
+    }
+
+    /**
+     * Combines a key with one more value, such as a setting used when writing the files, so that changing it changes
+     * the key.
+     * @param h a key, usually from {@link #key(byte[][][], int[], MaterialTable, Class, int, int, float, boolean, boolean)}
+     * @param v any value that affects the cached files
+     * @return a different key
+     */
+    public static long mix(long h, long v) {
+        h = (h ^ v) * 0xD1342543DE82EF95L;
+        return h ^ h >>> 31;
+    }
+
+    /**
+     * Copies the files of the entry for key, if there is a complete one, to {@code directory/name_angleN.png} and
+     * {@code directory/name.gif}, the names {@link FrameWriter} uses.
+     * @param key a key from {@link #key(byte[][][], int[], MaterialTable, Class, int, int, float, boolean, boolean)}
+     * @param directory the folder to copy into; will be created if needed
+     * @param name the start of each file name
+     * @param frames how many frames the animation has
+     * @return true if the files were copied, or false if this has no entry for key and it must be rendered
+     */
+    public boolean restore(long key, File directory, String name, int frames) {
+        final String entryName = name(key);
+        final File entry = new File(this.directory, entryName);
+        synchronized (this) {
+            if(!entries.containsKey(entryName) || !complete(entry, frames)) {
+                misses.incrementAndGet();
+                return false;
+            }
+            // marks the entry as the most recently used
+            entries.get(entryName);
+            entry.setLastModified(System.currentTimeMillis());
+        }
+        try {
+            directory.mkdirs();
+            for (int i = 0; i < frames; i++) {
+                Files.copy(new File(entry, "angle" + i + ".png").toPath(),
+                        new File(directory, name + "_angle" + i + ".png").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.copy(new File(entry, "animation.gif").toPath(),
+                    new File(directory, name + ".gif").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // the entry could have been evicted by another thread while copying; render instead
+            misses.incrementAndGet();
+            return false;
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Copies the files written for one animation into the entry for key, then deletes the least recently used entries
+     * until all of them fit in {@link #maxBytes}. If the files can't be read or the entry can't be written, this
+     * prints the stack trace, counts it in {@link #failures()}, and leaves the cache as it was, since the cache is only
+     * an optimization.
+     * @param key a key from {@link #key(byte[][][], int[], MaterialTable, Class, int, int, float, boolean, boolean)}
+     * @param directory the folder the files were written to
+     * @param name the start of each file name, as given to {@link FrameWriter#submit}
+     * @param frames how many frames the animation has
+     * @return true if the entry is now cached, or false if it could not be stored
+     */
+    public boolean store(long key, File directory, String name, int frames) {
+        final String entryName = name(key);
+        final File temp = new File(this.directory, entryName + "-" + Thread.currentThread().getId() + ".tmp");
+        final File entry = new File(this.directory, entryName);
+        try {
+            delete(temp);
+            if(!temp.mkdirs())
+                throw new IOException("Could not create " + temp);
+            for (int i = 0; i < frames; i++) {
+                Files.copy(new File(directory, name + "_angle" + i + ".png").toPath(),
+                        new File(temp, "angle" + i + ".png").toPath());
+            }
+            Files.copy(new File(directory, name + ".gif").toPath(), new File(temp, "animation.gif").toPath());
+            final long bytes = size(temp);
+            synchronized (this) {
+                if(entries.containsKey(entryName)) {
+                    // another thread stored the same animation first
+                    delete(temp);
+                    return true;
+                }
+                delete(entry);
+                if(!temp.renameTo(entry))
+                    throw new IOException("Could not rename " + temp + " to " + entry);
+                entries.put(entryName, bytes);
+                totalBytes += bytes;
+                evict();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            failures.incrementAndGet();
+            delete(temp);
+            return false;
+        }
+    }
+
+    /**
+     * @return how many calls to {@link #restore(long, File, String, int)} found their entry
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * @return how many calls to {@link #restore(long, File, String, int)} did not find their entry
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return how many calls to {@link #store(long, File, String, int)} could not store their entry
+     */
+    public int failures() {
+        return failures.get();
+    }
+
+    /**
+     * @return how many bytes all entries currently take
+     */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return how many entries are currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            final Map.Entry<String, Long> e = it.next();
+            delete(new File(directory, e.getKey()));
+            totalBytes -= e.getValue();
+            it.remove();
+        }
+    }
+
+    private static String name(long key) {
+        final String hex = Long.toHexString(key);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    private static boolean complete(File entry, int frames) {
+        for (int i = 0; i < frames; i++) {
+            if(!new File(entry, "angle" + i + ".png").isFile()) return false;
+        }
+        return new File(entry, "animation.gif").isFile();
+    }
+
+    private static long size(File folder) {
+        long bytes = 0;
+        final File[] files = folder.listFiles();
+        if(files != null) {
+            for (File f : files) {
+                bytes += f.length();
+            }
+        }
+        return bytes;
+    }
+
+    private static void delete(File folder) {
+        final File[] files = folder.listFiles();
+        if(files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        folder.delete();
+    }
+}
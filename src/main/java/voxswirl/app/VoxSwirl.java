@@ -4,33 +4,94 @@ import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.PixmapIO;
 import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.TimeUtils;
 import com.github.tommyettinger.anim8.*;
-import voxswirl.io.LittleEndianDataInputStream;
+import voxswirl.io.ModelCache;
 import voxswirl.io.VoxIO;
+import voxswirl.io.VoxModel;
+import voxswirl.physical.MaterialTable;
 import voxswirl.physical.Tools3D;
+import voxswirl.physical.VoxMaterial;
+import voxswirl.visual.PreparedModel;
+import voxswirl.visual.RendererPool;
 import voxswirl.visual.SmudgeRenderer;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 
 public class VoxSwirl extends ApplicationAdapter {
 //    public static final int QUALITY = 48;
     public static final int SCREEN_WIDTH = 512;//640;
     public static final int SCREEN_HEIGHT = 512;//720;
     public static boolean GLITCH = false;
+    /**
+     * How many threads to render frames with; if 1, or if {@link #GLITCH} is true, frames render one at a time.
+     * Defaults to the number of available processors, and can be set with {@code -Dvoxswirl.threads=N}.
+     */
+    public static int THREADS = Integer.getInteger("voxswirl.threads", Runtime.getRuntime().availableProcessors());
+    /**
+     * How many threads to write PNG and GIF files with, while rendering continues on other threads.
+     * Defaults to half the number of available processors, and can be set with {@code -Dvoxswirl.writers=N}.
+     */
+    public static int WRITERS = Integer.getInteger("voxswirl.writers", Math.max(1, Runtime.getRuntime().availableProcessors() >> 1));
+    /**
+     * How many rendered frames can be waiting to be written at once; rendering pauses when this many are queued.
+     * This must be at least 64, the number of frames in one animation. Can be set with {@code -Dvoxswirl.maxFrames=N}.
+     */
+    public static int MAX_FRAMES = Integer.getInteger("voxswirl.maxFrames", 64 * 4);
+    /**
+     * If true, only the surface voxels of each model are drawn, which is much faster for solid models but can shade a
+     * few pixels differently; see {@link Tools3D#surface(byte[][][])}. Can be set with {@code -Dvoxswirl.surfaceOnly=true}.
+     */
+    public static boolean SURFACE_ONLY = Boolean.getBoolean("voxswirl.surfaceOnly");
+    /**
+     * How many layers of voxels to keep inside each model when {@link #SURFACE_ONLY} is false, or 0 to keep them all.
+     * Keeping 3 is much faster for solid models and has matched drawing every voxel on the models in {@code vox/}, but
+     * that isn't guaranteed; see {@link PreparedModel#DEFAULT_DEPTH}. Can be set with {@code -Dvoxswirl.shellDepth=N}.
+     */
+    public static int SHELL_DEPTH = Integer.getInteger("voxswirl.shellDepth", PreparedModel.DEFAULT_DEPTH);
+    /**
+     * If not null, the folder of a {@link RenderCache} to copy previously rendered animations from instead of rendering
+     * them again, and to store newly rendered ones in. Can be set with {@code -Dvoxswirl.cache=path}; off by default.
+     */
+    public static String CACHE = System.getProperty("voxswirl.cache");
+    /**
+     * How many megabytes the {@link #CACHE} can hold before it deletes the animations used longest ago. Defaults to
+     * 1024, and can be set with {@code -Dvoxswirl.cacheMegabytes=N}.
+     */
+    public static long CACHE_MEGABYTES = Long.getLong("voxswirl.cacheMegabytes", 1024L);
+    /**
+     * How many megabytes of scaled and soaked models to keep in memory, so rendering the same file again skips reading
+     * and preprocessing it. Defaults to 256, and can be set with {@code -Dvoxswirl.modelCacheMegabytes=N}.
+     */
+    public static long MODEL_CACHE_MEGABYTES = Long.getLong("voxswirl.modelCacheMegabytes", 256L);
+    /**
+     * The frame rate of each GIF written.
+     */
+    public static final int GIF_FPS = 9;
     private SmudgeRenderer renderer;
+    /**
+     * Holds renderers between models and shrink levels, so models of the same size reuse their buffers and Pixmaps.
+     */
+    private final RendererPool pool = new RendererPool(THREADS + 2);
+    /**
+     * Holds models after {@link #load(String)} has scaled and soaked them, so an input given more than once is only
+     * read once; emptied when {@link #renderAll()} finishes, since nothing uses it after that.
+     */
+    private final ModelCache models = new ModelCache(MODEL_CACHE_MEGABYTES << 20, ModelCache.SCALE_AND_SOAK);
     private byte[][][] voxels;
+    /**
+     * The voxels of {@link #voxels} to draw after loading, with their materials, so each angle only rotates a list.
+     */
+    private PreparedModel prepared;
+    private int[] palette;
+    private IntMap<VoxMaterial> materials;
     private String name;
     private String[] inputs;
-    private PixmapIO.PNG png;
-    private AnimatedGif gif;
 //    private PNG8 png8;
     private AnimatedPNG apng;
     public VoxSwirl(String[] args){
@@ -73,80 +134,156 @@ public class VoxSwirl extends ApplicationAdapter {
     @Override
     public void create() {
         if (inputs == null) Gdx.app.exit();
+        renderAll();
+        Gdx.app.exit();
+    }
+
+    /**
+     * Renders every input file at 64 angles and 3 shrink levels, writing PNG frames and a GIF for each.
+     * Files are written by a {@link FrameWriter} while later frames render, and this waits for all writes to finish.
+     * This only needs {@link Gdx#files} to be set and Pixmap's natives to be loaded, so it can be called from
+     * {@link #create()} or from a headless entry point like {@link HeadlessVoxSwirl}.
+     * @return how many input files failed to load, plus how many output files failed to write, plus how many
+     *         animations failed to be stored in the render cache; 0 if everything succeeded
+     */
+    public int renderAll() {
+        int failures = 0;
         long startTime = TimeUtils.millis();
         RandomXS128 random = new RandomXS128(1, 1);
 //        Gdx.files.local("out/vox/").mkdirs();
-        png = new PixmapIO.PNG();
 //        png8 = new PNG8();
-        gif = new AnimatedGif();
         apng = new AnimatedPNG();
-        gif.setDitherAlgorithm(Dithered.DitherAlgorithm.NEUE);
+        FrameWriter writer = new FrameWriter(WRITERS, Math.max(64, MAX_FRAMES));
+        writer.ditherAlgorithm = Dithered.DitherAlgorithm.NEUE;
 //        png8.setDitherAlgorithm(Dithered.DitherAlgorithm.SCATTER);
 //        png8.palette = gif.palette;
-        gif.setDitherStrength(0.625f);
+        writer.ditherStrength = 0.625f;
         Gdx.files.local("out/vox").mkdirs();
-        for (String s : inputs) {
-            System.out.println("Rendering " + s);
-            load(s);
-            for (int shrink = 0; shrink < 3; shrink++) {
-                if (!renderer.pixmap.isDisposed()) renderer.pixmap.dispose();
-                renderer.shrink = shrink;
-                renderer.pixmap = new Pixmap(voxels.length * 4 + 4 >> shrink, voxels.length * 5 + 4 >> shrink, Pixmap.Format.RGBA8888);
+        FrameScheduler scheduler = THREADS > 1 && !GLITCH ? new FrameScheduler(THREADS, pool) : null;
+        // glitch mode changes the voxels randomly, so its renders are never the same twice
+        final RenderCache cache = CACHE != null && !GLITCH ? new RenderCache(new File(CACHE), CACHE_MEGABYTES << 20) : null;
+        try {
+            for (String s : inputs) {
+                System.out.println("Rendering " + s);
+                if (!load(s)) {
+                    System.out.println("Could not load " + s);
+                    failures++;
+                    continue;
+                }
+                for (int shrink = 0; shrink < 3; shrink++) {
+                    if (renderer.shrink != shrink) {
+                        SmudgeRenderer next = pool.obtain(renderer.size, shrink).set(renderer);
+                        pool.free(renderer);
+                        renderer = next;
+                    }
+                    final FileHandle directory = Gdx.files.local("out/shrink" + shrink + "/" + name);
+                    Runnable whenWritten = null;
+                    if (cache != null) {
+                        long key = RenderCache.key(voxels, palette, prepared.materials, renderer.getClass(), 64, shrink,
+                                renderer.neutral, renderer.outline, renderer.dither);
+                        key = RenderCache.mix(key, writer.ditherAlgorithm.ordinal());
+                        key = RenderCache.mix(key, Float.floatToIntBits(writer.ditherStrength));
+                        key = RenderCache.mix(key, GIF_FPS);
+                        // which voxels are drawn also changes the pixels, and that isn't in the voxels hashed above
+                        key = RenderCache.mix(key, SURFACE_ONLY ? -1 : SHELL_DEPTH);
+                        if (cache.restore(key, directory.file(), name, 64))
+                            continue;
+                        final long storeKey = key;
+                        final String storeName = name;
+                        whenWritten = new Runnable() {
+                            @Override
+                            public void run() {
+                                cache.store(storeKey, directory.file(), storeName, 64);
+                            }
+                        };
+                    }
 
 //            VoxIO.writeVOX("out/" + s, voxels, renderer.palette, VoxIO.lastMaterials);
 //            load("out/"+s);
-                try {
                     Pixmap pixmap;
-                    Array<Pixmap> pm = new Array<>(64);
-                    for (int i = 0; i < 64; i++) {
-                        // glitch mode
-                        if (GLITCH) {
-                            random.setSeed(s.hashCode() + i);
-                            renderer.saturation(random.nextFloat() - 0.5f);
-                            for (int x = 0; x < voxels.length; x++) {
-                                for (int y = 0; y < voxels[0].length; y++) {
-                                    for (int z = 0; z < voxels[0][0].length; z++) {
-                                        if (voxels[x][y][z] != 0 && (random.nextLong() & 62L) == 0L)
-                                            voxels[x][y][z] = (byte) (random.nextInt(256) & -random.nextInt(2) & -random.nextInt(2));
+                    Array<Pixmap> pm = null;
+                    writer.reserve(64);
+                    // until submit() takes the frames, they and their reservation must be given back if anything fails
+                    boolean submitted = false;
+                    try {
+                        if (scheduler != null)
+                            pm = scheduler.render(prepared, renderer, 64);
+                        else
+                            pm = new Array<>(64);
+                        // if the scheduler rendered everything already, this loop is skipped
+                        for (int i = pm.size; i < 64; i++) {
+                            // glitch mode
+                            if (GLITCH) {
+                                random.setSeed(s.hashCode() + i);
+                                renderer.saturation(random.nextFloat() - 0.5f);
+                                for (int x = 0; x < voxels.length; x++) {
+                                    for (int y = 0; y < voxels[0].length; y++) {
+                                        for (int z = 0; z < voxels[0][0].length; z++) {
+                                            if (voxels[x][y][z] != 0 && (random.nextLong() & 62L) == 0L)
+                                                voxels[x][y][z] = (byte) (random.nextInt(256) & -random.nextInt(2) & -random.nextInt(2));
+                                        }
                                     }
                                 }
+                                voxels = Tools3D.translateCopy(voxels,
+                                        (random.nextInt(3) & random.nextInt(3)) - (random.nextInt(3) & random.nextInt(3)),
+                                        (random.nextInt(3) & random.nextInt(3)) - (random.nextInt(3) & random.nextInt(3)),
+                                        (random.nextInt(3) & random.nextInt(3)) - (random.nextInt(3) & random.nextInt(3)));
+                                pixmap = renderer.drawSplats(voxels, (i & 63) * 0x1p-6f + (random.nextFloat() - random.nextFloat()) * 0x1p-5f, materials);
+                            } else {
+                                pixmap = renderer.drawSplats(prepared, (i & 63) * 0x1p-6f);
                             }
-                            voxels = Tools3D.translateCopy(voxels,
-                                    (random.nextInt(3) & random.nextInt(3)) - (random.nextInt(3) & random.nextInt(3)),
-                                    (random.nextInt(3) & random.nextInt(3)) - (random.nextInt(3) & random.nextInt(3)),
-                                    (random.nextInt(3) & random.nextInt(3)) - (random.nextInt(3) & random.nextInt(3)));
-                            pixmap = renderer.drawSplats(voxels, (i & 63) * 0x1p-6f + (random.nextFloat() - random.nextFloat()) * 0x1p-5f, VoxIO.lastMaterials);
-                        } else {
-                            pixmap = renderer.drawSplats(voxels, (i & 63) * 0x1p-6f, VoxIO.lastMaterials);
-                        }
-                        Pixmap p = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), pixmap.getFormat());
-                        p.drawPixmap(pixmap, 0, 0);
-                        pm.add(p);
-                        png.write(Gdx.files.local("out/shrink" + shrink + "/" + name + '/' + name + "_angle" + i + ".png"), p);
+                            Pixmap p = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), pixmap.getFormat());
+                            p.drawPixmap(pixmap, 0, 0);
+                            pm.add(p);
 //                    for (int colorCount : new int[]{3, 8, 32, 64, 86, 128, 256}) {
 //                        png8.palette.exact(Coloring.HALTONIC255, colorCount);
 //                        png8.write(Gdx.files.local("out/lowColor/" + colorCount + "/" + name + '/' + name + "_angle" + i + ".png"), p, false);
 //                    }
 //                    VoxIO.writeVOX("out/vox/" + s.substring(4, s.length() - 4) + "_angle"+i+".vox", renderer.remade, VoxIO.lastPalette);
-                    }
+                        }
 //                for (int colorCount : new int[]{3, 8, 32, 64, 86, 128, 256}) {
 //                    gif.palette.exact(Coloring.HALTONIC255, colorCount);
 //                    gif.write(Gdx.files.local("out/lowColor/" + colorCount + "/" + name + '/' + name + ".gif"), pm, 12);
 //                }
-                    gif.write(Gdx.files.local("out/shrink" + shrink + "/" + name + '/' + name + ".gif"), pm, 9);
+                        // writes each frame as a PNG and all frames as a GIF, then disposes the frames
+                        writer.submit(pm, directory, name, GIF_FPS, whenWritten);
+                        submitted = true;
+                    } finally {
+                        if (!submitted) {
+                            if (pm != null) {
+                                for (Pixmap p : pm) {
+                                    p.dispose();
+                                }
+                            }
+                            writer.release(64);
+                        }
+                    }
 //                    gif.palette.setDefaultPalette();
 //                    gif.write(Gdx.files.local("out/shrink" + shrink + "/" + name + '/' + name + "-256-color.gif"), pm, 12);
 //                apng.write(Gdx.files.local("out/" + name + '/' + name + ".png"), pm, 12);
-                    for (Pixmap pix : pm) {
-                        pix.dispose();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
                 }
             }
+        } finally {
+            // runs even if a model fails, so frames already queued are still written before the writer threads stop
+            if (scheduler != null) scheduler.dispose();
+            pool.free(renderer);
+            renderer = null;
+            pool.dispose();
+            failures += writer.await();
+            writer.dispose();
+        }
+        if (cache != null) {
+            // writing finished above, so every store has already run
+            failures += cache.failures();
+            System.out.println("Render cache: " + cache.hits() + " hits, " + cache.misses() + " misses, "
+                    + cache.failures() + " failed stores, " + (cache.totalBytes() >> 20) + " MB in " + cache.size()
+                    + " animations.");
         }
+        System.out.println("Model cache: " + models.hits() + " hits, " + models.misses() + " misses, "
+                + models.evictions() + " evictions, " + (models.totalBytes() >> 20) + " MB in " + models.size() + " models.");
+        models.clear();
         System.out.println("Finished in " + TimeUtils.timeSinceMillis(startTime) * 0.001 + " seconds.");
-        Gdx.app.exit();
+        return failures;
     }
 
     @Override
@@ -166,27 +303,36 @@ public class VoxSwirl extends ApplicationAdapter {
         new Lwjgl3Application(app, config);
     }
 
-    public void load(String name) {
-        try {
-            //// loads a file by its full path, which we get via a command-line arg
-            voxels = VoxIO.readVox(new LittleEndianDataInputStream(new FileInputStream(name)));
-            if(voxels == null) {
-                voxels = new byte[][][]{{{1}}};
-                return;
-            }
-            voxels = Tools3D.blockyScale(voxels);
-            Tools3D.soakInPlace(voxels);
-            int nameStart = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1;
-            this.name = name.substring(nameStart, name.indexOf('.', nameStart));
-//            renderer = new NextRenderer(voxels.length, QUALITY);
-//            renderer = new AngledRenderer(voxels.length);
-            renderer = new SmudgeRenderer(voxels.length);
-            renderer.palette(VoxIO.lastPalette);
-            renderer.saturation(0f);
-            renderer.outline = true;
-            
-        } catch (FileNotFoundException e) {
-            voxels = new byte[][][]{{{1}}}; 
+    /**
+     * Loads the .vox file at the given path and prepares {@link #renderer} to draw it, returning the previous renderer
+     * to {@link #pool} and taking one with the right size from it.
+     * @param name the path to a .vox file
+     * @return true if the file could be loaded, or false if it was missing or not a valid .vox file
+     */
+    public boolean load(String name) {
+        //// loads a file by its full path, which we get via a command-line arg
+        VoxModel model = models.get(name);
+        if(model == null) {
+            voxels = new byte[][][]{{{1}}};
+            return false;
         }
+        materials = model.materials;
+        palette = model.palette;
+        // the cached voxels are shared, and glitch mode changes its copy
+        voxels = GLITCH ? Tools3D.deepCopy(model.voxels) : model.voxels;
+        int nameStart = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1;
+        this.name = name.substring(nameStart, name.indexOf('.', nameStart));
+//        renderer = new NextRenderer(voxels.length, QUALITY);
+//        renderer = new AngledRenderer(voxels.length);
+        pool.free(renderer);
+        renderer = pool.obtain(voxels.length, 0);
+        renderer.palette(model.palette);
+        renderer.saturation(0f);
+        renderer.outline = true;
+        MaterialTable table = new MaterialTable(materials, renderer.defaultMaterial);
+        prepared = SURFACE_ONLY
+                ? new PreparedModel(Tools3D.surface(voxels), model.palette, table)
+                : new PreparedModel(voxels, model.palette, table, SHELL_DEPTH);
+        return true;
     }
 }
@@ -0,0 +1,179 @@
+package voxswirl.io;
+
+import voxswirl.physical.Tools3D;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps recently loaded models in memory after they have been read and preprocessed, so asking for the same file again
+ * skips both reading it and preprocessing it, which for {@link #SCALE_AND_SOAK} makes the model 8 times larger. Models
+ * are keyed by the file's path, and are loaded again if the file's last-modified time or length changed since.
+ * <br>
+ * The cache is bounded by an estimate of how many bytes its models take; once that is over {@link #maxBytes}, the
+ * models used longest ago are dropped. All methods are thread-safe. Models from {@link #get(String)} are shared by
+ * every caller, so they must be treated as read-only; use {@link Tools3D#deepCopy(byte[][][])} before changing voxels.
+ */
+public class ModelCache {
+    /**
+     * Changes a model once after it is read, before it is cached.
+     */
+    public interface Preprocessor {
+        /**
+         * @param model a model just read from a file; may be changed or replaced
+         * @return the model to cache and return from {@link #get(String)}
+         */
+        VoxModel process(VoxModel model);
+    }
+
+    /**
+     * Leaves models as they were read.
+     */
+    public static final Preprocessor NONE = new Preprocessor() {
+        @Override
+        public VoxModel process(VoxModel model) {
+            return model;
+        }
+    };
+
+    /**
+     * Doubles the size of models with {@link Tools3D#blockyScale(byte[][][])}, then fills their hidden interiors with
+     * {@link Tools3D#soakInPlace(byte[][][])}, as the renderers in voxswirl.app expect. This uses the parallel versions
+     * of both, which give the same voxels.
+     */
+    public static final Preprocessor SCALE_AND_SOAK = new Preprocessor() {
+        @Override
+        public VoxModel process(VoxModel model) {
+            final byte[][][] voxels = Tools3D.blockyScaleParallel(model.voxels);
+            Tools3D.soakInPlaceParallel(voxels);
+            return model.withVoxels(voxels);
+        }
+    };
+
+    private static final class Entry {
+        final VoxModel model;
+        final long lastModified, length, bytes;
+
+        Entry(VoxModel model, long lastModified, long length, long bytes) {
+            this.model = model;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.bytes = bytes;
+        }
+    }
+
+    public final long maxBytes;
+    public final Preprocessor preprocessor;
+    /**
+     * Paths in order of use, from least to most recent.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits, misses, evictions;
+
+    /**
+     * @param maxBytes how many bytes of models to keep before dropping the least recently used ones
+     * @param preprocessor what to do to each model after reading it; {@link #NONE} or {@link #SCALE_AND_SOAK}, usually
+     */
+    public ModelCache(long maxBytes, Preprocessor preprocessor) {
+        this.maxBytes = maxBytes;
+        this.preprocessor = preprocessor == null ? NONE : preprocessor;
+    }
+
+    /**
+     * Gets the preprocessed model for the .vox file at path, reading it with {@link VoxIO#readVoxModelMapped(String)}
+     * and preprocessing it only if it isn't cached or the file has changed since it was.
+     * @param path the path to a .vox file
+     * @return the preprocessed model, shared and read-only, or null if the file could not be read
+     */
+    public VoxModel get(String path) {
+        final File file = new File(path);
+        final long lastModified = file.lastModified(), length = file.length();
+        synchronized (this) {
+            final Entry e = entries.get(path);
+            if(e != null && e.lastModified == lastModified && e.length == length) {
+                hits++;
+                return e.model;
+            }
+            misses++;
+        }
+        // read outside the lock, so other models can be fetched while this one loads
+        VoxModel model = VoxIO.readVoxModelMapped(path);
+        if(model == null) return null;
+        model = preprocessor.process(model);
+        final long bytes = bytes(model);
+        synchronized (this) {
+            final Entry old = entries.put(path, new Entry(model, lastModified, length, bytes));
+            if(old != null) totalBytes -= old.bytes;
+            totalBytes += bytes;
+            evict();
+        }
+        return model;
+    }
+
+    /**
+     * Drops every cached model.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * @return how many calls to {@link #get(String)} used a cached model
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return how many calls to {@link #get(String)} had to read a file
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return how many models have been dropped to stay under {@link #maxBytes}
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return about how many bytes the cached models take
+     */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return how many models are cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        // always keep the newest model, even if it is larger than maxBytes on its own
+        while (totalBytes > maxBytes && entries.size() > 1 && it.hasNext()) {
+            totalBytes -= it.next().getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Estimates how many bytes a model takes on the heap: one per voxel, plus the headers of every array that holds
+     * them, plus the palette and materials.
+     */
+    private static long bytes(VoxModel model) {
+        final byte[][][] v = model.voxels;
+        final long sx = v.length, sy = sx == 0 ? 0 : v[0].length, sz = sy == 0 ? 0 : v[0][0].length;
+        return sx * sy * (sz + 16L) + sx * (sy * 4L + 16L) + model.palette.length * 4L + 16L
+                + model.materials.size * 128L;
+    }
+}
@@ -1,22 +1,37 @@
 package voxswirl.io;
 
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.IntFloatMap;
 import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectMap;
 import voxswirl.physical.VoxMaterial;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
 
 
 /**
  * Handles reading MagicaVoxel .vox files from file to byte[][][], and vice versa.
- * The palette and, if present, materials of the latest .vox file read are available
- * in {@link #lastPalette} and {@link #lastMaterials}.
+ * The {@code readVoxModel} methods return a {@link VoxModel} with the voxels, palette, and materials of one file, and
+ * can be called from any number of threads at once. The older {@code readVox} methods return only the voxels, and
+ * make the palette and, if present, materials of the latest .vox file read available in {@link #lastPalette} and
+ * {@link #lastMaterials}; they must only be called from one thread at a time.
  * <br>
  * Created by Tommy Ettinger on 12/12/2017.
  */
 public class VoxIO {
-    public static int[] lastPalette = {
+    /**
+     * The palette MagicaVoxel uses for a file with no RGBA chunk. This is copied, never changed.
+     */
+    static final int[] DEFAULT_PALETTE = {
             0x00000000, 0xffffffff, 0xffffccff, 0xffff99ff, 0xffff66ff, 0xffff33ff, 0xffff00ff, 0xffccffff,
             0xffccccff, 0xffcc99ff, 0xffcc66ff, 0xffcc33ff, 0xffcc00ff, 0xff99ffff, 0xff99ccff, 0xff9999ff,
             0xff9966ff, 0xff9933ff, 0xff9900ff, 0xff66ffff, 0xff66ccff, 0xff6699ff, 0xff6666ff, 0xff6633ff,
@@ -50,22 +65,94 @@ public class VoxIO {
             0x000088ff, 0x000077ff, 0x000055ff, 0x000044ff, 0x000022ff, 0x000011ff, 0xeeeeeeff, 0xddddddff,
             0xbbbbbbff, 0xaaaaaaff, 0x888888ff, 0x777777ff, 0x555555ff, 0x444444ff, 0x222222ff, 0x111111ff
     };
+    /**
+     * The palette of the latest .vox file read by one of the {@code readVox} methods. This is shared by every thread;
+     * use {@link #readVoxModel(InputStream)} or one of its overloads to get the palette of one file without touching it.
+     */
+    public static int[] lastPalette = Arrays.copyOf(DEFAULT_PALETTE, 256);
+    /**
+     * The materials of the latest .vox file read by one of the {@code readVox} methods. This is shared by every thread;
+     * use {@link #readVoxModel(InputStream)} or one of its overloads to get the materials of one file without touching it.
+     */
     public static final IntMap<VoxMaterial> lastMaterials = new IntMap<>(256);
 
+    /**
+     * Chunk IDs as they appear when read with {@link ByteBuffer#getInt()} from a little-endian buffer, so they can be
+     * compared with {@code ==} instead of building a String for each chunk.
+     */
+    static final int
+            ID_VOX  = 'V' | 'O' << 8 | 'X' << 16 | ' ' << 24,
+            ID_SIZE = 'S' | 'I' << 8 | 'Z' << 16 | 'E' << 24,
+            ID_XYZI = 'X' | 'Y' << 8 | 'Z' << 16 | 'I' << 24,
+            ID_RGBA = 'R' | 'G' << 8 | 'B' << 16 | 'A' << 24,
+            ID_MATL = 'M' | 'A' << 8 | 'T' << 16 | 'L' << 24,
+            ID_NTRN = 'n' | 'T' << 8 | 'R' << 16 | 'N' << 24,
+            ID_NGRP = 'n' | 'G' << 8 | 'R' << 16 | 'P' << 24,
+            ID_NSHP = 'n' | 'S' << 8 | 'H' << 16 | 'P' << 24,
+            ID_LAYR = 'L' | 'A' << 8 | 'Y' << 16 | 'R' << 24;
+
+    /**
+     * One node of the scene graph in a .vox file, as read from an nTRN, nGRP, or nSHP chunk; {@link #type} is the
+     * chunk's ID.
+     */
+    private static final class SceneNode {
+        int type;
+        /**
+         * The child of an nTRN node, or the model of an nSHP node.
+         */
+        int child;
+        /**
+         * The children of an nGRP node.
+         */
+        int[] children;
+        int rotation = VoxScene.IDENTITY, x, y, z, layer = -1;
+        boolean hidden;
+        String name;
+    }
+
     public static byte[][][] readVox(InputStream stream) {
         return readVox(new LittleEndianDataInputStream(stream));
     }
     public static byte[][][] readVox(LittleEndianDataInputStream stream) {
+        return last(readVoxModel(stream));
+    }
+
+    /**
+     * Copies the palette and materials of {@code model} into {@link #lastPalette} and {@link #lastMaterials}, for
+     * code that still reads those, and returns its voxels.
+     * @param model a VoxModel, or null if nothing could be read
+     * @return the voxels of model, or null if model is null
+     */
+    private static byte[][][] last(VoxModel model) {
+        lastMaterials.clear();
+        if(model == null)
+            return null;
+        System.arraycopy(model.palette, 0, lastPalette, 0, 256);
+        lastMaterials.putAll(model.materials);
+        return model.voxels;
+    }
+
+    public static VoxModel readVoxModel(InputStream stream) {
+        return readVoxModel(new LittleEndianDataInputStream(stream));
+    }
+    /**
+     * Reads a MagicaVoxel .vox file from the given stream, then closes it. This does not use or change any shared
+     * state, so it is safe to call from several threads at once with different streams.
+     * @param stream a stream containing a .vox file
+     * @return a new VoxModel with the voxels, palette, and materials of the file, or null if it has no voxels
+     */
+    public static VoxModel readVoxModel(LittleEndianDataInputStream stream) {
         // check out https://github.com/ephtracy/voxel-model/blob/master/MagicaVoxel-file-format-vox.txt for the file format used below
         byte[][][] voxelData = null;
-        lastMaterials.clear();
+        final int[] palette = Arrays.copyOf(DEFAULT_PALETTE, 256);
+        final IntMap<VoxMaterial> materials = new IntMap<>(16);
+        int sizeX = 16, sizeY = 16, size = 16, sizeZ = 16, offX = 0, offY = 0;
         try {
             byte[] chunkId = new byte[4];
             if (4 != stream.read(chunkId))
                 return null;
             //int version = 
             stream.readInt();
-            int sizeX = 16, sizeY = 16, size = 16, sizeZ = 16, offX = 0, offY = 0;
             byte[] key = new byte[6]; // used for MaterialTrait
             byte[] val = new byte[10]; // used for MaterialType and numbers
             // a MagicaVoxel .vox file starts with a 'magic' 4 character 'VOX ' identifier
@@ -98,7 +185,7 @@ public class VoxIO {
                     } else if(chunkName.equals("RGBA"))
                     {
                         for (int i = 1; i < 256; i++) {
-                            lastPalette[i] = Integer.reverseBytes(stream.readInt());
+                            palette[i] = Integer.reverseBytes(stream.readInt());
                         }
                         stream.readInt();
                     } else if(chunkName.equals("MATL")){ // remove this block if you don't handle materials
@@ -110,8 +197,8 @@ public class VoxIO {
                             int valLen = stream.readInt();
                             stream.read(val, 0, valLen);
                             VoxMaterial vm;
-                            if ((vm = lastMaterials.get(materialID)) == null)
-                                lastMaterials.put(materialID, new VoxMaterial(new String(val, 0, valLen, StandardCharsets.UTF_8)));
+                            if ((vm = materials.get(materialID)) == null)
+                                materials.put(materialID, new VoxMaterial(new String(val, 0, valLen, StandardCharsets.UTF_8)));
                             else
                                 vm.putTrait(new String(key, 0, keyLen, StandardCharsets.UTF_8), Float.parseFloat(new String(val, 0, valLen, StandardCharsets.UTF_8)));
                         }
@@ -124,7 +211,346 @@ public class VoxIO {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return voxelData;
+        return voxelData == null ? null : new VoxModel(voxelData, palette, materials, sizeX, sizeY, sizeZ);
+    }
+
+    /**
+     * Memory-maps the file at {@code filename} and reads it with {@link #readVox(ByteBuffer)}, without copying the
+     * file's contents onto the Java heap.
+     * @param filename the path to a .vox file
+     * @return the voxels in the file, or null if it could not be read
+     */
+    public static byte[][][] readVoxMapped(String filename) {
+        return last(readVoxModelMapped(filename));
+    }
+
+    /**
+     * Reads a MagicaVoxel .vox file that is already in memory, starting at the buffer's position. This acts just like
+     * {@link #readVox(LittleEndianDataInputStream)}, including how it sets {@link #lastPalette} and
+     * {@link #lastMaterials}, but reads chunk IDs as ints and reads each voxel with one int read. The buffer's byte
+     * order is changed to little-endian, and its position is left at the end of the data read.
+     * @param buffer a ByteBuffer containing a .vox file, such as one from {@link FileChannel#map}
+     * @return the voxels in the buffer, or null if it does not contain a .vox file
+     */
+    public static byte[][][] readVox(ByteBuffer buffer) {
+        return last(readVoxModel(buffer));
+    }
+
+    /**
+     * Memory-maps the file at {@code filename} and reads it with {@link #readVoxModel(ByteBuffer)}. This does not use
+     * or change any shared state, so it is safe to call from several threads at once.
+     * @param filename the path to a .vox file
+     * @return a new VoxModel with the voxels, palette, and materials of the file, or null if it could not be read
+     */
+    public static VoxModel readVoxModelMapped(String filename) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            return readVoxModel(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads a MagicaVoxel .vox file that is already in memory, starting at the buffer's position, reading chunk IDs as
+     * ints and each voxel with one int read. The buffer's byte order is changed to little-endian, and its position is
+     * left at the end of the data read. This does not use or change any shared state, so it is safe to call from
+     * several threads at once with different buffers. If the file has more than one model, only the last is kept; use
+     * {@link #readVoxScene(ByteBuffer)} to read all of them.
+     * @param buffer a ByteBuffer containing a .vox file, such as one from {@link FileChannel#map}
+     * @return a new VoxModel with the voxels, palette, and materials of the file, or null if it has no voxels
+     */
+    public static VoxModel readVoxModel(ByteBuffer buffer) {
+        // check out https://github.com/ephtracy/voxel-model/blob/master/MagicaVoxel-file-format-vox.txt for the file format used below
+        byte[][][] voxelData = null;
+        final int[] palette = Arrays.copyOf(DEFAULT_PALETTE, 256);
+        final IntMap<VoxMaterial> materials = new IntMap<>(16);
+        int sizeX = 16, sizeY = 16, size, sizeZ = 16, offX = 0, offY = 0;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.remaining() < 8 || buffer.getInt() != ID_VOX)
+                return null;
+            //int version =
+            buffer.getInt();
+            while (buffer.remaining() >= 12) {
+                // each chunk has an ID, size and child chunks
+                final int chunkId = buffer.getInt();
+                final int chunkSize = buffer.getInt();
+                //int childChunks =
+                buffer.getInt();
+                final int start = buffer.position();
+                // there are only 4 chunks we care about, and they are SIZE, XYZI, RGBA, and MATL
+                if (chunkId == ID_SIZE) {
+                    sizeX = buffer.getInt();
+                    sizeY = buffer.getInt();
+                    sizeZ = buffer.getInt();
+                    size = Math.max(sizeZ, Math.max(sizeX, sizeY));
+                    offX = size - sizeX >> 1;
+                    offY = size - sizeY >> 1;
+                    voxelData = new byte[size][size][size];
+                } else if (chunkId == ID_XYZI && voxelData != null) {
+                    // XYZI contains n voxels, each with x, y, z and color index values in one int
+                    final int numVoxels = buffer.getInt();
+                    for (int i = 0, p = start + 4; i < numVoxels; i++, p += 4) {
+                        final int xyzi = buffer.getInt(p);
+                        voxelData[(xyzi & 255) + offX][(xyzi >>> 8 & 255) + offY][xyzi >>> 16 & 255] = (byte) (xyzi >>> 24);
+                    }
+                } else if (chunkId == ID_RGBA) {
+                    for (int i = 1; i < 256; i++) {
+                        palette[i] = Integer.reverseBytes(buffer.getInt());
+                    }
+                } else if (chunkId == ID_MATL) {
+                    readMaterial(buffer, materials);
+                }
+                // skip to the next chunk, including any excess bytes
+                buffer.position(start + chunkSize);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+        return voxelData == null ? null : new VoxModel(voxelData, palette, materials, sizeX, sizeY, sizeZ);
+    }
+
+    /**
+     * Memory-maps the file at {@code filename} and reads it with {@link #readVoxScene(ByteBuffer)}. This does not use
+     * or change any shared state, so it is safe to call from several threads at once.
+     * @param filename the path to a .vox file
+     * @return a new VoxScene with every model and instance in the file, or null if it could not be read
+     */
+    public static VoxScene readVoxSceneMapped(String filename) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            return readVoxScene(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads a MagicaVoxel .vox file that is already in memory, starting at the buffer's position, keeping every model
+     * in it and where its scene graph places each one. Where {@link #readVoxModel(ByteBuffer)} keeps only the last
+     * model in a file, this reads each SIZE and XYZI pair into its own model, once, and makes an
+     * {@link VoxScene.Instance} for each nSHP node that shows it, with the rotations and translations of every nTRN
+     * node above it combined. Nodes and layers that are hidden are left out. A file with no scene graph, such as one
+     * from {@link #writeVOX(String, byte[][][], int[], IntMap)}, gets one instance of each model with no rotation or
+     * translation. This does not use or change any shared state.
+     * @param buffer a ByteBuffer containing a .vox file, such as one from {@link FileChannel#map}
+     * @return a new VoxScene with the models, instances, palette, and materials of the file, or null if it has no models
+     */
+    public static VoxScene readVoxScene(ByteBuffer buffer) {
+        // check out https://github.com/ephtracy/voxel-model/blob/master/MagicaVoxel-file-format-vox-extension.txt for the scene graph chunks
+        final Array<VoxModel> models = new Array<>(4);
+        final int[] palette = Arrays.copyOf(DEFAULT_PALETTE, 256);
+        final IntMap<VoxMaterial> materials = new IntMap<>(16);
+        final IntMap<SceneNode> nodes = new IntMap<>(16);
+        final BitSet hiddenLayers = new BitSet();
+        final ObjectMap<String, String> dict = new ObjectMap<>(8);
+        int sizeX = 0, sizeY = 0, sizeZ = 0;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.remaining() < 8 || buffer.getInt() != ID_VOX)
+                return null;
+            //int version =
+            buffer.getInt();
+            while (buffer.remaining() >= 12) {
+                final int chunkId = buffer.getInt();
+                final int chunkSize = buffer.getInt();
+                //int childChunks =
+                buffer.getInt();
+                final int start = buffer.position();
+                if (chunkId == ID_SIZE) {
+                    sizeX = buffer.getInt();
+                    sizeY = buffer.getInt();
+                    sizeZ = buffer.getInt();
+                } else if (chunkId == ID_XYZI) {
+                    // the palette and materials are filled in later, since they come after every model
+                    final byte[][][] voxelData = new byte[sizeX][sizeY][sizeZ];
+                    final int numVoxels = buffer.getInt();
+                    for (int i = 0, p = start + 4; i < numVoxels; i++, p += 4) {
+                        final int xyzi = buffer.getInt(p);
+                        voxelData[xyzi & 255][xyzi >>> 8 & 255][xyzi >>> 16 & 255] = (byte) (xyzi >>> 24);
+                    }
+                    models.add(new VoxModel(voxelData, palette, materials, sizeX, sizeY, sizeZ));
+                } else if (chunkId == ID_RGBA) {
+                    for (int i = 1; i < 256; i++) {
+                        palette[i] = Integer.reverseBytes(buffer.getInt());
+                    }
+                } else if (chunkId == ID_MATL) {
+                    readMaterial(buffer, materials);
+                } else if (chunkId == ID_NTRN) {
+                    final SceneNode node = new SceneNode();
+                    node.type = chunkId;
+                    nodes.put(buffer.getInt(), node);
+                    readDict(buffer, dict);
+                    node.name = dict.get("_name");
+                    node.hidden = "1".equals(dict.get("_hidden"));
+                    node.child = buffer.getInt();
+                    //int reserved =
+                    buffer.getInt();
+                    node.layer = buffer.getInt();
+                    final int frames = buffer.getInt();
+                    // only the first frame of an animated transform is used
+                    if (frames > 0) {
+                        readDict(buffer, dict);
+                        final String r = dict.get("_r"), t = dict.get("_t");
+                        if (r != null) node.rotation = Integer.parseInt(r.trim());
+                        if (t != null) {
+                            final String[] xyz = t.trim().split("\\s+");
+                            node.x = Integer.parseInt(xyz[0]);
+                            node.y = Integer.parseInt(xyz[1]);
+                            node.z = Integer.parseInt(xyz[2]);
+                        }
+                    }
+                } else if (chunkId == ID_NGRP) {
+                    final SceneNode node = new SceneNode();
+                    node.type = chunkId;
+                    nodes.put(buffer.getInt(), node);
+                    readDict(buffer, dict);
+                    node.children = new int[buffer.getInt()];
+                    for (int i = 0; i < node.children.length; i++) {
+                        node.children[i] = buffer.getInt();
+                    }
+                } else if (chunkId == ID_NSHP) {
+                    final SceneNode node = new SceneNode();
+                    node.type = chunkId;
+                    nodes.put(buffer.getInt(), node);
+                    readDict(buffer, dict);
+                    // a shape can list one model per animation frame; only the first is used
+                    node.child = buffer.getInt() > 0 ? buffer.getInt() : -1;
+                } else if (chunkId == ID_LAYR) {
+                    final int layer = buffer.getInt();
+                    readDict(buffer, dict);
+                    if ("1".equals(dict.get("_hidden")) && layer >= 0) hiddenLayers.set(layer);
+                }
+                // skip to the next chunk, including any excess bytes
+                buffer.position(start + chunkSize);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+        if (models.size == 0)
+            return null;
+        final Array<VoxScene.Instance> instances = new Array<>(models.size);
+        if (nodes.containsKey(0))
+            addInstances(nodes, 0, VoxScene.IDENTITY, 0, 0, 0, null, hiddenLayers, models, instances, 0);
+        else {
+            // no scene graph, so each model is shown once where it is
+            for (int i = 0; i < models.size; i++) {
+                instances.add(new VoxScene.Instance(models.get(i), i, VoxScene.IDENTITY, 0, 0, 0, null));
+            }
+        }
+        return new VoxScene(models, instances, palette, materials);
+    }
+
+    /**
+     * Walks the scene graph from the node with the given id, adding an instance for each visible nSHP node with the
+     * transforms of the nTRN nodes above it combined into the given rotation and translation.
+     */
+    private static void addInstances(IntMap<SceneNode> nodes, int id, int rotation, int x, int y, int z, String name,
+                                     BitSet hiddenLayers, Array<VoxModel> models, Array<VoxScene.Instance> instances,
+                                     int depth) {
+        final SceneNode node = nodes.get(id);
+        // a valid scene graph is a tree, but a broken file could loop forever without the depth limit
+        if (node == null || depth > 64)
+            return;
+        if (node.type == ID_NTRN) {
+            if (node.hidden || node.layer >= 0 && hiddenLayers.get(node.layer))
+                return;
+            addInstances(nodes, node.child, VoxScene.compose(rotation, node.rotation),
+                    x + VoxScene.rotate(rotation, 0, node.x, node.y, node.z),
+                    y + VoxScene.rotate(rotation, 1, node.x, node.y, node.z),
+                    z + VoxScene.rotate(rotation, 2, node.x, node.y, node.z),
+                    node.name == null ? name : node.name, hiddenLayers, models, instances, depth + 1);
+        } else if (node.type == ID_NGRP) {
+            for (int child : node.children) {
+                addInstances(nodes, child, rotation, x, y, z, name, hiddenLayers, models, instances, depth + 1);
+            }
+        } else if (node.type == ID_NSHP && node.child >= 0 && node.child < models.size) {
+            instances.add(new VoxScene.Instance(models.get(node.child), node.child, rotation, x, y, z, name));
+        }
+    }
+
+    /**
+     * Reads the contents of a MATL chunk into materials, adding a material or traits to an existing one.
+     */
+    static void readMaterial(ByteBuffer buffer, IntMap<VoxMaterial> materials) {
+        int materialID = buffer.getInt();
+        int dictSize = buffer.getInt();
+        for (int i = 0; i < dictSize; i++) {
+            String key = readString(buffer);
+            String val = readString(buffer);
+            VoxMaterial vm;
+            if ((vm = materials.get(materialID)) == null)
+                materials.put(materialID, new VoxMaterial(val));
+            else
+                vm.putTrait(key, Float.parseFloat(val));
+        }
+    }
+
+    /**
+     * Reads a DICT, as used by the scene graph chunks, replacing the contents of into.
+     */
+    private static void readDict(ByteBuffer buffer, ObjectMap<String, String> into) {
+        into.clear();
+        final int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            final String key = readString(buffer);
+            into.put(key, readString(buffer));
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * How many bytes the .vox writers hold before writing to the file.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Counts the non-empty voxels, so the size of an XYZI chunk can be written before its contents.
+     */
+    private static int countVoxels(byte[][][] voxelData) {
+        int count = 0;
+        for (byte[][] plane : voxelData) {
+            for (byte[] column : plane) {
+                for (byte v : column) {
+                    if(v != 0) count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the contents of an XYZI chunk, 4 bytes per non-empty voxel, in the same order
+     * {@link #countVoxels(byte[][][])} counts them. The voxels are gathered into a small array first, so the stream is
+     * written in blocks instead of one byte at a time.
+     */
+    private static void writeVoxels(OutputStream out, byte[][][] voxelData) throws IOException {
+        final byte[] block = new byte[4096];
+        int n = 0;
+        for (int x = 0; x < voxelData.length; x++) {
+            for (int y = 0; y < voxelData[x].length; y++) {
+                final byte[] column = voxelData[x][y];
+                for (int z = 0; z < column.length; z++) {
+                    if(column[z] == 0) continue;
+                    block[n] = (byte) x;
+                    block[n+1] = (byte) y;
+                    block[n+2] = (byte) z;
+                    block[n+3] = column[z];
+                    if((n += 4) == block.length) {
+                        out.write(block, 0, n);
+                        n = 0;
+                    }
+                }
+            }
+        }
+        out.write(block, 0, n);
     }
 
     private static void writeInt(DataOutputStream bin, int value) throws IOException
@@ -142,21 +568,9 @@ public class VoxIO {
             int xSize = voxelData.length, ySize = voxelData[0].length, zSize = voxelData[0][0].length;
 
             FileOutputStream fos = new FileOutputStream(filename);
-            DataOutputStream bin = new DataOutputStream(fos);
-            ByteArrayOutputStream voxelsRaw = new ByteArrayOutputStream(0);
-            int cc;
-            for (int x = 0; x < xSize; x++) {
-                for (int y = 0; y < ySize; y++) {
-                    for (int z = 0; z < zSize; z++) {
-                        cc = voxelData[x][y][z];
-                        if(cc == 0) continue;
-                        voxelsRaw.write(x);
-                        voxelsRaw.write(y);
-                        voxelsRaw.write(z);
-                        voxelsRaw.write(cc);
-                    }
-                }
-            }
+            DataOutputStream bin = new DataOutputStream(new BufferedOutputStream(fos, WRITE_BUFFER_SIZE));
+            // each voxel takes 4 bytes: x, y, z, and its palette index
+            final int voxelBytes = countVoxels(voxelData) << 2;
 
             // a MagicaVoxel .vox file starts with a 'magic' 4 character 'VOX ' identifier
             bin.writeBytes("VOX ");
@@ -165,7 +579,7 @@ public class VoxIO {
 
             bin.writeBytes("MAIN");
             writeInt(bin, 0);
-            writeInt(bin, 12 + 12 + 12 + 4 + voxelsRaw.size() + 12 + 1024);
+            writeInt(bin, 12 + 12 + 12 + 4 + voxelBytes + 12 + 1024);
 
             bin.writeBytes("SIZE");
             writeInt(bin, 12);
@@ -175,10 +589,10 @@ public class VoxIO {
             writeInt(bin, zSize);
 
             bin.writeBytes("XYZI");
-            writeInt(bin, 4 + voxelsRaw.size());
+            writeInt(bin, 4 + voxelBytes);
             writeInt(bin, 0);
-            writeInt(bin, voxelsRaw.size() >> 2);
-            bin.write(voxelsRaw.toByteArray());
+            writeInt(bin, voxelBytes >> 2);
+            writeVoxels(bin, voxelData);
 
             bin.writeBytes("RGBA");
             writeInt(bin, 1024);
@@ -237,25 +651,13 @@ public class VoxIO {
             int frames = voxelData.length, xSize = voxelData[0].length, ySize = voxelData[0][0].length, zSize = voxelData[0][0][0].length;
 
             FileOutputStream fos = new FileOutputStream(filename);
-            DataOutputStream bin = new DataOutputStream(fos);
-            byte[][] rawArrays = new byte[frames][];
-            int cc, totalSize = 0;
+            DataOutputStream bin = new DataOutputStream(new BufferedOutputStream(fos, WRITE_BUFFER_SIZE));
+            // the chunk sizes must be known before any voxels are written, so this counts every frame first
+            int[] voxelBytes = new int[frames];
+            int totalSize = 0;
             for (int f = 0; f < frames; f++) {
-                ByteArrayOutputStream voxelsRaw = new ByteArrayOutputStream(0);
-                for (int x = 0; x < xSize; x++) {
-                    for (int y = 0; y < ySize; y++) {
-                        for (int z = 0; z < zSize; z++) {
-                            cc = voxelData[f][x][y][z];
-                            if (cc == 0) continue;
-                            voxelsRaw.write(x);
-                            voxelsRaw.write(y);
-                            voxelsRaw.write(z);
-                            voxelsRaw.write(cc);
-                        }
-                    }
-                }
-                rawArrays[f] = voxelsRaw.toByteArray();
-                totalSize += rawArrays[f].length;
+                voxelBytes[f] = countVoxels(voxelData[f]) << 2;
+                totalSize += voxelBytes[f];
             }
 
             // a MagicaVoxel .vox file starts with a 'magic' 4 character 'VOX ' identifier
@@ -280,11 +682,10 @@ public class VoxIO {
                 writeInt(bin, zSize);
 
                 bin.writeBytes("XYZI");
-                writeInt(bin, 4 + rawArrays[f].length);
+                writeInt(bin, 4 + voxelBytes[f]);
                 writeInt(bin, 0);
-                writeInt(bin, rawArrays[f].length >> 2);
-                bin.write(rawArrays[f]);
-                //voxelsRaw.writeTo(bin);
+                writeInt(bin, voxelBytes[f] >> 2);
+                writeVoxels(bin, voxelData[f]);
             }
             bin.writeBytes("RGBA");
             writeInt(bin, 1024);
@@ -0,0 +1,186 @@
+package voxswirl.io;
+
+import com.badlogic.gdx.utils.IntMap;
+import voxswirl.physical.VoxMaterial;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Finds where each chunk of a MagicaVoxel .vox file is without decoding any of them, then decodes only what is asked
+ * for. Opening a file only reads the 12-byte header of each chunk, so getting the {@link #palette()} of a large file, or
+ * one frame of a file written by {@link VoxIO#writeAnimatedVOX(String, byte[][][][], int[])}, does not decode every
+ * voxel in it the way {@link VoxIO#readVoxModel(ByteBuffer)} would.
+ * <br>
+ * Each {@link #model(int)} is decoded into a new cube every time it is called, just as
+ * {@link VoxIO#readVoxModel(ByteBuffer)} decodes the last model in a file. The palette and materials are decoded once,
+ * the first time they are needed, and shared by every model. All methods are thread-safe.
+ */
+public class VoxIndex {
+    private final ByteBuffer buffer;
+    /**
+     * Where the contents of each model's SIZE and XYZI chunks start, in the order they appear.
+     */
+    private int[] sizeStarts = new int[4], xyziStarts = new int[4];
+    private int modelCount;
+    /**
+     * Where the contents of the RGBA chunk start, or -1 if there is none.
+     */
+    private int rgbaStart = -1;
+    /**
+     * Where the contents of each MATL chunk start.
+     */
+    private int[] matlStarts = new int[16];
+    private int matlCount;
+    private int[] palette;
+    private IntMap<VoxMaterial> materials;
+
+    /**
+     * Indexes a .vox file that is already in memory, from the buffer's position to its limit. Only chunk headers are
+     * read here. The buffer must not be changed while this is in use; its own position and byte order are left alone.
+     * @param buffer a ByteBuffer containing a .vox file, such as one from {@link FileChannel#map}
+     * @throws IllegalArgumentException if the buffer does not start with a .vox header
+     */
+    public VoxIndex(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        final ByteBuffer b = this.buffer;
+        if (b.remaining() < 8 || b.getInt(0) != VoxIO.ID_VOX)
+            throw new IllegalArgumentException("Not a .vox file");
+        int p = 8, pendingSize = -1;
+        while (b.limit() - p >= 12) {
+            final int chunkId = b.getInt(p);
+            final int chunkSize = b.getInt(p + 4);
+            final int start = p + 12;
+            // MAIN has no contents of its own, just children, so its size is 0 and the loop steps into it
+            if (chunkSize < 0 || chunkSize > b.limit() - start)
+                break;
+            if (chunkId == VoxIO.ID_SIZE) {
+                pendingSize = start;
+            } else if (chunkId == VoxIO.ID_XYZI && pendingSize >= 0) {
+                // a model is only counted once its voxels are found, after its SIZE
+                if (modelCount == sizeStarts.length) {
+                    sizeStarts = Arrays.copyOf(sizeStarts, modelCount << 1);
+                    xyziStarts = Arrays.copyOf(xyziStarts, modelCount << 1);
+                }
+                sizeStarts[modelCount] = pendingSize;
+                xyziStarts[modelCount++] = start;
+                pendingSize = -1;
+            } else if (chunkId == VoxIO.ID_RGBA) {
+                rgbaStart = start;
+            } else if (chunkId == VoxIO.ID_MATL) {
+                if (matlCount == matlStarts.length)
+                    matlStarts = Arrays.copyOf(matlStarts, matlCount << 1);
+                matlStarts[matlCount++] = start;
+            }
+            p = start + chunkSize;
+        }
+    }
+
+    /**
+     * Memory-maps the file at {@code filename} and indexes it. The mapping stays valid after the file's channel closes.
+     * @param filename the path to a .vox file
+     * @return a new VoxIndex, or null if the file could not be read or is not a .vox file
+     */
+    public static VoxIndex open(String filename) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            return new VoxIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @return how many models (or frames, for an animated file) the file has
+     */
+    public int modelCount() {
+        return modelCount;
+    }
+
+    /**
+     * Gets the size of a model as stored in the file, without decoding its voxels.
+     * @param index which model, from 0 to {@link #modelCount()} - 1
+     * @param axis 0 for x, 1 for y, or 2 for z
+     * @return the model's size on that axis
+     */
+    public int size(int index, int axis) {
+        if (index < 0 || index >= modelCount)
+            throw new IndexOutOfBoundsException("No model " + index + " in a file with " + modelCount);
+        return buffer.getInt(sizeStarts[index] + 4 * axis);
+    }
+
+    /**
+     * Gets how many voxels a model has, without decoding them.
+     * @param index which model, from 0 to {@link #modelCount()} - 1
+     * @return how many voxels the model's XYZI chunk holds
+     */
+    public int voxelCount(int index) {
+        if (index < 0 || index >= modelCount)
+            throw new IndexOutOfBoundsException("No model " + index + " in a file with " + modelCount);
+        return buffer.getInt(xyziStarts[index]);
+    }
+
+    /**
+     * Decodes the palette the first time this is called, and returns the same array after that.
+     * @return 256 RGBA8888 colors; the default MagicaVoxel palette if the file has no RGBA chunk
+     */
+    public synchronized int[] palette() {
+        if (palette == null) {
+            final int[] p = Arrays.copyOf(VoxIO.DEFAULT_PALETTE, 256);
+            if (rgbaStart >= 0) {
+                for (int i = 1; i < 256; i++) {
+                    p[i] = Integer.reverseBytes(buffer.getInt(rgbaStart + 4 * (i - 1)));
+                }
+            }
+            palette = p;
+        }
+        return palette;
+    }
+
+    /**
+     * Decodes the materials the first time this is called, and returns the same map after that.
+     * @return the materials of palette indices that had a MATL chunk
+     */
+    public synchronized IntMap<VoxMaterial> materials() {
+        if (materials == null) {
+            final IntMap<VoxMaterial> m = new IntMap<>(Math.max(matlCount, 1));
+            final ByteBuffer b = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                for (int i = 0; i < matlCount; i++) {
+                    b.position(matlStarts[i]);
+                    VoxIO.readMaterial(b, m);
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+            materials = m;
+        }
+        return materials;
+    }
+
+    /**
+     * Decodes one model into a new cube, as large as the model is on its largest axis and centered on x and y, the
+     * same way {@link VoxIO#readVoxModel(ByteBuffer)} decodes a file that has only that model.
+     * @param index which model, from 0 to {@link #modelCount()} - 1
+     * @return a new VoxModel with its own voxels, sharing {@link #palette()} and {@link #materials()}
+     */
+    public VoxModel model(int index) {
+        final int sizeX = size(index, 0), sizeY = size(index, 1), sizeZ = size(index, 2);
+        final int size = Math.max(sizeZ, Math.max(sizeX, sizeY));
+        final int offX = size - sizeX >> 1, offY = size - sizeY >> 1;
+        final byte[][][] voxelData = new byte[size][size][size];
+        final int start = xyziStarts[index];
+        final int numVoxels = buffer.getInt(start);
+        for (int i = 0, p = start + 4; i < numVoxels; i++, p += 4) {
+            final int xyzi = buffer.getInt(p);
+            voxelData[(xyzi & 255) + offX][(xyzi >>> 8 & 255) + offY][xyzi >>> 16 & 255] = (byte) (xyzi >>> 24);
+        }
+        return new VoxModel(voxelData, palette(), materials(), sizeX, sizeY, sizeZ);
+    }
+}
@@ -0,0 +1,51 @@
+package voxswirl.io;
+
+import com.badlogic.gdx.utils.IntMap;
+import voxswirl.physical.VoxMaterial;
+
+/**
+ * Everything read from one MagicaVoxel .vox file: its voxels, its palette, and its materials, plus the size it had
+ * before it was padded into a cube. Unlike {@link VoxIO#lastPalette} and {@link VoxIO#lastMaterials}, each VoxModel
+ * belongs to only one file, so several can be loaded and rendered at the same time.
+ * <br>
+ * The fields are final, but the arrays and map they refer to are not copied, so a VoxModel should be treated as
+ * read-only once it is shared between threads.
+ */
+public class VoxModel {
+    /**
+     * The voxels as a cube of palette indices, indexed by x, y, then z, with 0 meaning empty. The model is centered on
+     * x and y if it was smaller than the cube on those axes.
+     */
+    public final byte[][][] voxels;
+    /**
+     * 256 RGBA8888 colors, indexed by the palette indices in {@link #voxels}. Index 0 is always transparent.
+     */
+    public final int[] palette;
+    /**
+     * Materials for palette indices that had a MATL chunk; palette indices without one are not present.
+     */
+    public final IntMap<VoxMaterial> materials;
+    /**
+     * The size of the model as stored in the file, before it was padded to the size of {@link #voxels}.
+     */
+    public final int sizeX, sizeY, sizeZ;
+
+    public VoxModel(byte[][][] voxels, int[] palette, IntMap<VoxMaterial> materials, int sizeX, int sizeY, int sizeZ) {
+        this.voxels = voxels;
+        this.palette = palette;
+        this.materials = materials;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+    }
+
+    /**
+     * Creates a VoxModel with the same palette and materials as this one, but different voxels, such as after scaling
+     * or soaking them with {@link voxswirl.physical.Tools3D}. The sizes stay those of the model as stored in the file.
+     * @param voxels the new voxels, which are used directly
+     * @return a new VoxModel sharing this one's palette, materials, and sizes
+     */
+    public VoxModel withVoxels(byte[][][] voxels) {
+        return new VoxModel(voxels, palette, materials, sizeX, sizeY, sizeZ);
+    }
+}
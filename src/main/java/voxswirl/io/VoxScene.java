@@ -0,0 +1,177 @@
+package voxswirl.io;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import voxswirl.physical.VoxMaterial;
+
+/**
+ * Everything read from a MagicaVoxel .vox file that can hold more than one model: each distinct model once, and each
+ * place a model is shown in the scene as an {@link Instance} that refers to it, with the rotation and translation from
+ * the file's scene graph (its nTRN, nGRP, and nSHP chunks) already combined. Read one with
+ * {@link VoxIO#readVoxScene(java.nio.ByteBuffer)} or {@link VoxIO#readVoxSceneMapped(String)}.
+ * <br>
+ * Unlike the cubes read by {@link VoxIO#readVoxModel(java.nio.ByteBuffer)}, the voxels of each model in
+ * {@link #models} are exactly as large as the model is in the file, so its voxel at (x, y, z) is in the same place the
+ * file puts it. Use {@link #flatten()} to get the whole scene as one cube that the renderers can draw. As with
+ * {@link VoxModel}, nothing here is copied, so a VoxScene should be treated as read-only once it is shared.
+ */
+public class VoxScene {
+    /**
+     * One model placed in the scene. Its voxel at (x, y, z) is placed at {@link #transform(int, int, int, int[])}.
+     */
+    public static final class Instance {
+        /**
+         * The model shown here; the same object as {@code models.get(modelIndex)}, shared with any other instances of it.
+         */
+        public final VoxModel model;
+        public final int modelIndex;
+        /**
+         * The rotation, packed the way MagicaVoxel packs it; see {@link #rotate(int, int, int, int, int)}.
+         */
+        public final int rotation;
+        /**
+         * Where the center of the model is placed.
+         */
+        public final int x, y, z;
+        /**
+         * The name given to this in MagicaVoxel, or null if it has none.
+         */
+        public final String name;
+
+        public Instance(VoxModel model, int modelIndex, int rotation, int x, int y, int z, String name) {
+            this.model = model;
+            this.modelIndex = modelIndex;
+            this.rotation = rotation;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.name = name;
+        }
+
+        /**
+         * Finds where a voxel of {@link #model} goes in the scene. This rotates the center of the voxel around the
+         * center of the model, so a model with an even size is placed the same way whichever way it faces.
+         * @param vx the x of a voxel in the model
+         * @param vy the y of a voxel in the model
+         * @param vz the z of a voxel in the model
+         * @param out will have the x, y, and z in the scene written to its first 3 items
+         * @return out, after modifications
+         */
+        public int[] transform(int vx, int vy, int vz, int[] out) {
+            // works with doubled coordinates so the center of a model with an even size is not rounded
+            final int dx = 2 * vx + 1 - model.sizeX, dy = 2 * vy + 1 - model.sizeY, dz = 2 * vz + 1 - model.sizeZ;
+            out[0] = Math.floorDiv(2 * x + rotate(rotation, 0, dx, dy, dz), 2);
+            out[1] = Math.floorDiv(2 * y + rotate(rotation, 1, dx, dy, dz), 2);
+            out[2] = Math.floorDiv(2 * z + rotate(rotation, 2, dx, dy, dz), 2);
+            return out;
+        }
+    }
+
+    /**
+     * The packed rotation that leaves everything as it is.
+     */
+    public static final int IDENTITY = 0 | 1 << 2;
+
+    /**
+     * Each distinct model in the file, in the order their XYZI chunks appear, which is the order the scene graph
+     * refers to them by.
+     */
+    public final Array<VoxModel> models;
+    /**
+     * Every visible placement of a model, in the order the scene graph lists them; later ones are drawn over earlier
+     * ones by {@link #flatten()}.
+     */
+    public final Array<Instance> instances;
+    /**
+     * 256 RGBA8888 colors shared by every model. Index 0 is always transparent.
+     */
+    public final int[] palette;
+    /**
+     * Materials shared by every model, for palette indices that had a MATL chunk.
+     */
+    public final IntMap<VoxMaterial> materials;
+
+    public VoxScene(Array<VoxModel> models, Array<Instance> instances, int[] palette, IntMap<VoxMaterial> materials) {
+        this.models = models;
+        this.instances = instances;
+        this.palette = palette;
+        this.materials = materials;
+    }
+
+    /**
+     * Places every instance into one cube, as large as the scene is on its largest axis, and centered on x and y the
+     * same way {@link VoxIO#readVoxModel(java.nio.ByteBuffer)} centers a single model; for a file with one model,
+     * this gives the same voxels as that method. Where instances overlap, the one listed later wins.
+     * @return a new VoxModel holding the whole scene, or null if the scene shows nothing
+     */
+    public VoxModel flatten() {
+        if(instances.size == 0) return null;
+        final int[] a = new int[3], b = new int[3];
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE,
+                maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (Instance inst : instances) {
+            // rotations only swap and flip axes, so opposite corners of a model stay opposite corners
+            inst.transform(0, 0, 0, a);
+            inst.transform(inst.model.sizeX - 1, inst.model.sizeY - 1, inst.model.sizeZ - 1, b);
+            minX = Math.min(minX, Math.min(a[0], b[0]));
+            minY = Math.min(minY, Math.min(a[1], b[1]));
+            minZ = Math.min(minZ, Math.min(a[2], b[2]));
+            maxX = Math.max(maxX, Math.max(a[0], b[0]));
+            maxY = Math.max(maxY, Math.max(a[1], b[1]));
+            maxZ = Math.max(maxZ, Math.max(a[2], b[2]));
+        }
+        final int sizeX = maxX - minX + 1, sizeY = maxY - minY + 1, sizeZ = maxZ - minZ + 1;
+        final int size = Math.max(sizeZ, Math.max(sizeX, sizeY));
+        final int offX = (size - sizeX >> 1) - minX, offY = (size - sizeY >> 1) - minY, offZ = -minZ;
+        final byte[][][] voxels = new byte[size][size][size];
+        for (Instance inst : instances) {
+            final byte[][][] v = inst.model.voxels;
+            for (int x = 0; x < v.length; x++) {
+                for (int y = 0; y < v[x].length; y++) {
+                    for (int z = 0; z < v[x][y].length; z++) {
+                        if(v[x][y][z] == 0) continue;
+                        inst.transform(x, y, z, a);
+                        voxels[a[0] + offX][a[1] + offY][a[2] + offZ] = v[x][y][z];
+                    }
+                }
+            }
+        }
+        return new VoxModel(voxels, palette, materials, sizeX, sizeY, sizeZ);
+    }
+
+    /**
+     * Gets one axis of a point after a packed rotation. In a packed rotation, bits 0-1 hold which axis of the input goes
+     * to the output's x, bits 2-3 which goes to its y (z gets the remaining one), and bits 4, 5, and 6 are set if the
+     * output's x, y, or z is negated.
+     * @param rotation a packed rotation, as in MagicaVoxel's {@code _r} attribute
+     * @param axis 0 for x, 1 for y, or 2 for z
+     * @return the given axis of the rotated point
+     */
+    public static int rotate(int rotation, int axis, int x, int y, int z) {
+        final int from = source(rotation, axis);
+        final int v = from == 0 ? x : from == 1 ? y : z;
+        return (rotation >>> 4 + axis & 1) == 0 ? v : -v;
+    }
+
+    /**
+     * Combines two packed rotations into one that does {@code inner} first, then {@code outer}.
+     * @param outer the packed rotation of a parent in the scene graph
+     * @param inner the packed rotation of its child
+     * @return a packed rotation
+     */
+    public static int compose(int outer, int inner) {
+        int result = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            final int mid = source(outer, axis);
+            final int sign = (outer >>> 4 + axis ^ inner >>> 4 + mid) & 1;
+            if(axis < 2) result |= source(inner, mid) << 2 * axis;
+            result |= sign << 4 + axis;
+        }
+        return result;
+    }
+
+    private static int source(int rotation, int axis) {
+        final int first = rotation & 3, second = rotation >>> 2 & 3;
+        return axis == 0 ? first : axis == 1 ? second : 3 - first - second;
+    }
+}
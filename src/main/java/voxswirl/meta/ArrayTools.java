@@ -33,6 +33,24 @@ public class ArrayTools {
 			Arrays.fill(array2d[i], value);
 		}
 	}
+	/**
+	 * Fills the rectangle of {@code array2d} from {@code [startX][startY]} (inclusive) to {@code [endX][endY]}
+	 * (exclusive) with {@code value}. The rectangle is clamped to the bounds of array2d, so it can extend past them.
+	 * @param array2d a 2D array that will be modified in-place
+	 * @param startX the first x index to fill
+	 * @param startY the first y index to fill
+	 * @param endX one more than the last x index to fill
+	 * @param endY one more than the last y index to fill
+	 * @param value the value to fill the rectangle with
+	 */
+	public static void fill(float[][] array2d, int startX, int startY, int endX, int endY, float value) {
+		endX = Math.min(endX, array2d.length);
+		for (int i = Math.max(startX, 0); i < endX; i++) {
+			final int start = Math.max(startY, 0), end = Math.min(endY, array2d[i].length);
+			if(start < end)
+				Arrays.fill(array2d[i], start, end, value);
+		}
+	}
 	/**
 	 * Creates a 2D array of the given width and height, filled with entirely with the value contents.
 	 * You may want to use {@link #fill(int[][], int)} to modify an existing 2D array instead.
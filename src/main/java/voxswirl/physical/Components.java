@@ -0,0 +1,181 @@
+package voxswirl.physical;
+
+import java.util.Arrays;
+
+/**
+ * The connected parts of a model, found by {@link #label(byte[][][])}: voxels are in the same component if a chain of
+ * voxels sharing faces joins them. Components are numbered from 1 to {@link #count} in the order their first voxel
+ * appears when going through x, then y, then z, as {@link Tools3D#firstTight(byte[][][])} does; 0 means empty.
+ * <br>
+ * Every per-component array here is indexed by component number, so it has {@code count + 1} items and item 0 is
+ * unused. Bounds are inclusive, so a component made of one voxel has the same min and max.
+ */
+public class Components {
+    public final int sizeX, sizeY, sizeZ;
+    /**
+     * The component of each cell, indexed by {@code sizeZ * (x * sizeY + y) + z}, or 0 for empty cells.
+     */
+    public final int[] labels;
+    /**
+     * How many components there are.
+     */
+    public final int count;
+    /**
+     * How many voxels each component has.
+     */
+    public final int[] voxelCounts;
+    /**
+     * The inclusive bounding box of each component.
+     */
+    public final int[] minX, minY, minZ, maxX, maxY, maxZ;
+
+    private Components(int sizeX, int sizeY, int sizeZ, int[] labels, int count) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.labels = labels;
+        this.count = count;
+        voxelCounts = new int[count + 1];
+        minX = new int[count + 1];
+        minY = new int[count + 1];
+        minZ = new int[count + 1];
+        maxX = new int[count + 1];
+        maxY = new int[count + 1];
+        maxZ = new int[count + 1];
+        Arrays.fill(minX, Integer.MAX_VALUE);
+        Arrays.fill(minY, Integer.MAX_VALUE);
+        Arrays.fill(minZ, Integer.MAX_VALUE);
+        Arrays.fill(maxX, -1);
+        Arrays.fill(maxY, -1);
+        Arrays.fill(maxZ, -1);
+    }
+
+    /**
+     * Finds every face-connected part of voxels in two passes. The first gives each voxel the smallest provisional
+     * label of its already-visited neighbors (at x-1, y-1, and z-1), recording with union-find that any other labels
+     * there belong to the same part; the second replaces each label with its part's number and gathers the counts and
+     * bounds. This takes time proportional to the size of voxels no matter how many parts there are.
+     * @param voxels a 3D byte array indexed by x, y, then z; will not be modified
+     * @return a new Components describing voxels
+     */
+    public static Components label(byte[][][] voxels) {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        final int[] labels = new int[xs * ys * zs];
+        // parent[i] is a provisional label that i is joined with, and is never more than i; a root has parent[i] == i
+        int[] parent = new int[64];
+        int next = 1;
+        for (int x = 0, i = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                for (int z = 0; z < zs; z++, i++) {
+                    if(voxels[x][y][z] == 0) continue;
+                    final int a = x > 0 ? labels[i - ys * zs] : 0,
+                            b = y > 0 ? labels[i - zs] : 0,
+                            c = z > 0 ? labels[i - 1] : 0;
+                    if((a | b | c) == 0) {
+                        if(next == parent.length) parent = Arrays.copyOf(parent, next << 1);
+                        parent[next] = next;
+                        labels[i] = next++;
+                    } else {
+                        int root = 0;
+                        if(a != 0) root = union(parent, root, a);
+                        if(b != 0) root = union(parent, root, b);
+                        if(c != 0) root = union(parent, root, c);
+                        labels[i] = root;
+                    }
+                }
+            }
+        }
+        // numbers each root in the order its first voxel appears; since roots are the smallest label in their part,
+        // and labels are made in that order, that is also the order the parts' first voxels appear
+        final int[] number = new int[next];
+        int count = 0;
+        for (int p = 1; p < next; p++) {
+            final int root = find(parent, p);
+            number[p] = root == p ? ++count : number[root];
+        }
+        final Components parts = new Components(xs, ys, zs, labels, count);
+        for (int x = 0, i = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                for (int z = 0; z < zs; z++, i++) {
+                    if(labels[i] == 0) continue;
+                    final int n = labels[i] = number[labels[i]];
+                    parts.voxelCounts[n]++;
+                    if(x < parts.minX[n]) parts.minX[n] = x;
+                    if(y < parts.minY[n]) parts.minY[n] = y;
+                    if(z < parts.minZ[n]) parts.minZ[n] = z;
+                    if(x > parts.maxX[n]) parts.maxX[n] = x;
+                    if(y > parts.maxY[n]) parts.maxY[n] = y;
+                    if(z > parts.maxZ[n]) parts.maxZ[n] = z;
+                }
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Joins the parts with provisional labels root and other, returning the root of the joined part; root can be 0 to
+     * only look up other's root.
+     */
+    private static int union(int[] parent, int root, int other) {
+        other = find(parent, other);
+        if(root == 0 || root == other) return other;
+        // the smaller label stays the root, so roots keep the order their parts were found in
+        if(other < root) {
+            parent[root] = other;
+            return other;
+        }
+        parent[other] = root;
+        return root;
+    }
+
+    private static int find(int[] parent, int p) {
+        int root = p;
+        while (parent[root] != root) root = parent[root];
+        // path compression
+        while (parent[p] != root) {
+            final int up = parent[p];
+            parent[p] = root;
+            p = up;
+        }
+        return root;
+    }
+
+    /**
+     * Gets the component with the most voxels; if several tie, the one whose first voxel comes first.
+     * @return a component number, or 0 if there are no voxels
+     */
+    public int largest() {
+        int best = 0;
+        for (int n = 1; n <= count; n++) {
+            if(voxelCounts[n] > voxelCounts[best]) best = n;
+        }
+        return best;
+    }
+
+    /**
+     * Gets the component a cell belongs to.
+     * @return a component number, or 0 if the cell is empty
+     */
+    public int get(int x, int y, int z) {
+        return labels[sizeZ * (x * sizeY + y) + z];
+    }
+
+    /**
+     * Copies only the voxels of one component into a new array the same size as voxels.
+     * @param voxels the same voxels given to {@link #label(byte[][][])}; will not be modified
+     * @param component a component number from 1 to {@link #count}; if 0, the result is empty
+     * @return a new 3D byte array with the same size as voxels, holding only that component
+     */
+    public byte[][][] extract(byte[][][] voxels, int component) {
+        final byte[][][] part = new byte[sizeX][sizeY][sizeZ];
+        if(component <= 0 || component > count) return part;
+        for (int x = minX[component]; x <= maxX[component]; x++) {
+            for (int y = minY[component]; y <= maxY[component]; y++) {
+                for (int z = minZ[component], i = sizeZ * (x * sizeY + y) + z; z <= maxZ[component]; z++, i++) {
+                    if(labels[i] == component) part[x][y][z] = voxels[x][y][z];
+                }
+            }
+        }
+        return part;
+    }
+}
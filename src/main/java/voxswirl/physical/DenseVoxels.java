@@ -0,0 +1,54 @@
+package voxswirl.physical;
+
+/**
+ * A {@link VoxelGrid} view of an existing {@code byte[][][]}, indexed by x, y, then z. The array is not copied, so
+ * changes to it are visible here.
+ */
+public class DenseVoxels implements VoxelGrid {
+    public final byte[][][] voxels;
+
+    public DenseVoxels(byte[][][] voxels) {
+        this.voxels = voxels;
+    }
+
+    @Override
+    public int sizeX() {
+        return voxels.length;
+    }
+
+    @Override
+    public int sizeY() {
+        return voxels[0].length;
+    }
+
+    @Override
+    public int sizeZ() {
+        return voxels[0][0].length;
+    }
+
+    @Override
+    public byte get(int x, int y, int z) {
+        if(x < 0 || y < 0 || z < 0 || x >= voxels.length || y >= voxels[x].length || z >= voxels[x][y].length)
+            return 0;
+        return voxels[x][y][z];
+    }
+
+    @Override
+    public int count() {
+        return Tools3D.count(voxels);
+    }
+
+    @Override
+    public void forEach(Visitor visitor) {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        for (int z = 0; z < zs; z++) {
+            for (int x = 0; x < xs; x++) {
+                for (int y = 0; y < ys; y++) {
+                    final byte v = voxels[x][y][z];
+                    if(v != 0)
+                        visitor.visit(x, y, z, v);
+                }
+            }
+        }
+    }
+}
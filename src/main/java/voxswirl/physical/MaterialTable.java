@@ -0,0 +1,137 @@
+package voxswirl.physical;
+
+import com.badlogic.gdx.utils.IntFloatMap;
+import com.badlogic.gdx.utils.IntMap;
+
+import java.util.Arrays;
+
+/**
+ * Every trait of every palette index's {@link VoxMaterial}, copied into one flat float array so renderers can read a
+ * trait with an array index instead of an {@link IntMap} lookup followed by an {@link IntFloatMap} lookup. The trait
+ * {@code t} of palette index {@code i} is at {@code traits[i * TRAITS + t.ordinal()]}; palette indices without a
+ * material use the values of a default {@link VoxMaterial}.
+ * <br>
+ * Build one of these once for each set of materials and reuse it; {@link #set(IntMap)} refills an existing table
+ * without allocating.
+ */
+public class MaterialTable {
+    /**
+     * How many traits each palette index has in {@link #traits}; the same as {@code VoxMaterial.ALL_TRAITS.length}.
+     */
+    public static final int TRAITS = VoxMaterial.ALL_TRAITS.length;
+    /**
+     * Offsets of the traits renderers read most, to add to {@code index * TRAITS}.
+     */
+    public static final int ALPHA = VoxMaterial.MaterialTrait._alpha.ordinal(),
+            EMIT = VoxMaterial.MaterialTrait._emit.ordinal(),
+            IOR = VoxMaterial.MaterialTrait._ior.ordinal(),
+            METAL = VoxMaterial.MaterialTrait._metal.ordinal(),
+            ROUGH = VoxMaterial.MaterialTrait._rough.ordinal();
+
+    private static final float[] DEFAULT_TRAITS = new float[TRAITS];
+    static {
+        final VoxMaterial m = new VoxMaterial();
+        for (int t = 0; t < TRAITS; t++) {
+            DEFAULT_TRAITS[t] = m.getTrait(VoxMaterial.ALL_TRAITS[t]);
+        }
+    }
+
+    /**
+     * {@code 256 * TRAITS} trait values; see the class documentation for the layout.
+     */
+    public final float[] traits = new float[256 * TRAITS];
+
+    /**
+     * Creates a table where every palette index has the default material.
+     */
+    public MaterialTable() {
+        set(null, null);
+    }
+
+    /**
+     * Creates a table with the traits of {@code materials}.
+     * @param materials the materials for palette indices; may be null or empty to use the default for all
+     */
+    public MaterialTable(IntMap<VoxMaterial> materials) {
+        set(materials, null);
+    }
+
+    /**
+     * Creates a table with the traits of {@code materials}, using {@code fallback} for missing palette indices.
+     * @param materials the materials for palette indices; may be null or empty to use the fallback for all
+     * @param fallback the material to use for missing palette indices; may be null to use a default VoxMaterial
+     */
+    public MaterialTable(IntMap<VoxMaterial> materials, VoxMaterial fallback) {
+        set(materials, fallback);
+    }
+
+    /**
+     * Copies the traits of {@code other} into this.
+     * @param other another MaterialTable; will not be modified
+     */
+    public MaterialTable(MaterialTable other) {
+        set(other);
+    }
+
+    /**
+     * Refills this table with the traits of {@code materials}.
+     * @param materials the materials for palette indices; may be null or empty to use the default for all
+     * @return this, for chaining
+     */
+    public MaterialTable set(IntMap<VoxMaterial> materials) {
+        return set(materials, null);
+    }
+
+    /**
+     * Refills this table with the traits of {@code materials}, using {@code fallback} for any palette index without a
+     * material.
+     * @param materials the materials for palette indices; may be null or empty to use the fallback for all
+     * @param fallback the material to use for missing palette indices; may be null to use a default VoxMaterial
+     * @return this, for chaining
+     */
+    public MaterialTable set(IntMap<VoxMaterial> materials, VoxMaterial fallback) {
+        for (int i = 0, o = 0; i < 256; i++, o += TRAITS) {
+            final VoxMaterial m = materials == null ? fallback : materials.get(i, fallback);
+            if(m == null) {
+                System.arraycopy(DEFAULT_TRAITS, 0, traits, o, TRAITS);
+            } else {
+                for (int t = 0; t < TRAITS; t++) {
+                    traits[o + t] = m.traits.get(t, 0f);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Copies the traits of {@code other} into this.
+     * @param other another MaterialTable; will not be modified
+     * @return this, for chaining
+     */
+    public MaterialTable set(MaterialTable other) {
+        System.arraycopy(other.traits, 0, traits, 0, traits.length);
+        return this;
+    }
+
+    /**
+     * Gets one trait of the material for a palette index.
+     * @param index a palette index; only the low 8 bits are used, so a voxel byte can be passed directly
+     * @param trait which trait to get
+     * @return the value of that trait, which is 0 if the material doesn't have it
+     */
+    public float get(int index, VoxMaterial.MaterialTrait trait) {
+        return traits[(index & 255) * TRAITS + trait.ordinal()];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(traits, ((MaterialTable) o).traits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(traits);
+    }
+}
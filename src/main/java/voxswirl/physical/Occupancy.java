@@ -0,0 +1,135 @@
+package voxswirl.physical;
+
+/**
+ * Which cells of a model are filled, one bit per cell, packed into 64-bit words along z. Code that only needs to know
+ * whether cells are empty can test a whole column of 64 cells with one word instead of loading 64 bytes from a
+ * {@code byte[][][]}; {@link #surfaceWord(int, int, int)} finds which of 64 voxels have an empty neighbor with a few
+ * bitwise operations, and words that are 0 let whole stretches of empty space be skipped.
+ * <br>
+ * The word holding (x, y, z) is {@link #bits} at {@code (x * sizeY + y) * wordsZ + (z >>> 6)}, and the cell is bit
+ * {@code z & 63} of it. Bits past {@link #sizeZ} in the last word of each column are always 0. Cells outside the grid
+ * count as empty, as they do for {@link DenseVoxels#get(int, int, int)}. This doesn't watch the array it was made
+ * from, so code that changes which cells are empty should also call {@link #set(int, int, int, boolean)}.
+ */
+public class Occupancy {
+    public final int sizeX, sizeY, sizeZ;
+    /**
+     * How many words each column along z takes.
+     */
+    public final int wordsZ;
+    public final long[] bits;
+
+    /**
+     * Makes an empty grid with the given size.
+     */
+    public Occupancy(int sizeX, int sizeY, int sizeZ) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        wordsZ = sizeZ + 63 >>> 6;
+        bits = new long[sizeX * sizeY * wordsZ];
+    }
+
+    /**
+     * Makes a grid with the same size as voxels, with a bit set for each non-zero voxel.
+     * @param voxels a 3D byte array indexed by x, y, then z; will not be modified
+     */
+    public Occupancy(byte[][][] voxels) {
+        this(voxels.length, voxels[0].length, voxels[0][0].length);
+        for (int x = 0, i = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++, i += wordsZ) {
+                final byte[] column = voxels[x][y];
+                for (int z = 0; z < sizeZ; z++) {
+                    if(column[z] != 0) bits[i + (z >>> 6)] |= 1L << z;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if (x, y, z) is inside the grid and filled
+     */
+    public boolean get(int x, int y, int z) {
+        if(x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ)
+            return false;
+        return (bits[(x * sizeY + y) * wordsZ + (z >>> 6)] & 1L << z) != 0;
+    }
+
+    /**
+     * Marks (x, y, z), which must be inside the grid, as filled or empty.
+     */
+    public void set(int x, int y, int z, boolean filled) {
+        final int i = (x * sizeY + y) * wordsZ + (z >>> 6);
+        if(filled) bits[i] |= 1L << z;
+        else bits[i] &= ~(1L << z);
+    }
+
+    /**
+     * Gets 64 cells along z at once, from {@code w * 64} to {@code w * 64 + 63}, as bits from lowest to highest.
+     * @return the word, or 0 if x, y, or w is outside the grid
+     */
+    public long word(int x, int y, int w) {
+        if(x < 0 || y < 0 || w < 0 || x >= sizeX || y >= sizeY || w >= wordsZ)
+            return 0L;
+        return bits[(x * sizeY + y) * wordsZ + w];
+    }
+
+    /**
+     * Gets which of the 64 cells in {@link #word(int, int, int)} are filled and have at least one empty neighbor
+     * across a face, counting cells outside the grid as empty. This matches which cells
+     * {@link Tools3D#surface(byte[][][])} keeps.
+     */
+    public long surfaceWord(int x, int y, int w) {
+        final long filled = word(x, y, w);
+        if(filled == 0L) return 0L;
+        // a cell is hidden if it and all six neighbors are filled; the z neighbors come from shifting this word, with
+        // the bit that crosses into the next or previous word taken from that word
+        final long hidden = filled
+                & word(x - 1, y, w) & word(x + 1, y, w)
+                & word(x, y - 1, w) & word(x, y + 1, w)
+                & (filled << 1 | word(x, y, w - 1) >>> 63)
+                & (filled >>> 1 | word(x, y, w + 1) << 63);
+        return filled & ~hidden;
+    }
+
+    /**
+     * Makes a new grid holding only the filled cells with an empty neighbor, as {@link #surfaceWord(int, int, int)}
+     * finds them.
+     */
+    public Occupancy surface() {
+        final Occupancy surface = new Occupancy(sizeX, sizeY, sizeZ);
+        for (int x = 0, i = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int w = 0; w < wordsZ; w++, i++) {
+                    surface.bits[i] = surfaceWord(x, y, w);
+                }
+            }
+        }
+        return surface;
+    }
+
+    /**
+     * Gets which of the six neighbors of (x, y, z) are filled, as the bits used by {@link SurfaceVoxels#faces}.
+     */
+    public int faces(int x, int y, int z) {
+        int faces = 0;
+        if(get(x - 1, y, z)) faces |= SurfaceVoxels.X_MINUS;
+        if(get(x, y - 1, z)) faces |= SurfaceVoxels.Y_MINUS;
+        if(get(x, y, z - 1)) faces |= SurfaceVoxels.Z_MINUS;
+        if(get(x + 1, y, z)) faces |= SurfaceVoxels.X_PLUS;
+        if(get(x, y + 1, z)) faces |= SurfaceVoxels.Y_PLUS;
+        if(get(x, y, z + 1)) faces |= SurfaceVoxels.Z_PLUS;
+        return faces;
+    }
+
+    /**
+     * @return how many cells are filled
+     */
+    public int count() {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
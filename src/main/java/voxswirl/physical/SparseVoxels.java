@@ -0,0 +1,167 @@
+package voxswirl.physical;
+
+import java.util.Arrays;
+
+/**
+ * A {@link VoxelGrid} that stores only its occupied cells, as two parallel arrays: {@link #positions}, with each
+ * position packed into an int, and {@link #colors}, with the palette index at that position. This takes 5 bytes per
+ * voxel no matter how large the bounding box is, so large thin models like floors and trees take far less memory than
+ * a cube would, and drawing them only visits voxels that are actually there.
+ * <br>
+ * Positions are packed as {@code z << 20 | x << 10 | y} and sorted in ascending order, which is the same order that
+ * renderers draw in; each axis can be at most 1024 cells long.
+ * <br>
+ * Every renderer's {@code drawSplats()} takes any {@link VoxelGrid} and only visits what its
+ * {@link VoxelGrid#forEach(VoxelGrid.Visitor)} gives it, so drawing one of these skips the empty space a cube would have.
+ * Only the storage is sparse, though: the .vox readers in {@link voxswirl.io.VoxIO} and the methods in {@link Tools3D}
+ * that look up neighbors, such as {@link Tools3D#soakInPlace(byte[][][])}, still work on full cubes, so loading and
+ * preparing a model still briefly needs memory for its whole bounding cube. A SparseVoxels saves memory for what is kept
+ * after that, such as the voxels of a {@link voxswirl.visual.PreparedModel}.
+ */
+public class SparseVoxels implements VoxelGrid {
+    public final int sizeX, sizeY, sizeZ;
+    /**
+     * Each occupied position, packed as {@code z << 20 | x << 10 | y}, in ascending order.
+     */
+    public final int[] positions;
+    /**
+     * The palette index at each position in {@link #positions}; never 0.
+     */
+    public final byte[] colors;
+
+    /**
+     * Uses the given arrays directly; positions must be sorted in ascending order and colors must not contain 0.
+     */
+    public SparseVoxels(int sizeX, int sizeY, int sizeZ, int[] positions, byte[] colors) {
+        if(sizeX > 1024 || sizeY > 1024 || sizeZ > 1024)
+            throw new IllegalArgumentException("SparseVoxels can be at most 1024 cells on each axis");
+        if(positions.length != colors.length)
+            throw new IllegalArgumentException("positions and colors must have the same length");
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.positions = positions;
+        this.colors = colors;
+    }
+
+    /**
+     * Copies every non-zero cell of {@code voxels} into a new SparseVoxels with the same size.
+     * @param voxels a 3D byte array indexed by x, y, then z; will not be modified
+     * @return a new SparseVoxels with the same contents
+     */
+    public static SparseVoxels from(byte[][][] voxels) {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        final int n = Tools3D.count(voxels);
+        final int[] positions = new int[n];
+        final byte[] colors = new byte[n];
+        int i = 0;
+        for (int z = 0; z < zs; z++) {
+            for (int x = 0; x < xs; x++) {
+                for (int y = 0; y < ys; y++) {
+                    final byte v = voxels[x][y][z];
+                    if(v != 0) {
+                        positions[i] = z << 20 | x << 10 | y;
+                        colors[i++] = v;
+                    }
+                }
+            }
+        }
+        return new SparseVoxels(xs, ys, zs, positions, colors);
+    }
+
+    public static int x(int position) {
+        return position >>> 10 & 1023;
+    }
+
+    public static int y(int position) {
+        return position & 1023;
+    }
+
+    public static int z(int position) {
+        return position >>> 20;
+    }
+
+    @Override
+    public int sizeX() {
+        return sizeX;
+    }
+
+    @Override
+    public int sizeY() {
+        return sizeY;
+    }
+
+    @Override
+    public int sizeZ() {
+        return sizeZ;
+    }
+
+    @Override
+    public byte get(int x, int y, int z) {
+        if(x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ)
+            return 0;
+        final int i = Arrays.binarySearch(positions, z << 20 | x << 10 | y);
+        return i < 0 ? 0 : colors[i];
+    }
+
+    @Override
+    public int count() {
+        return positions.length;
+    }
+
+    @Override
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < positions.length; i++) {
+            final int p = positions[i];
+            visitor.visit(p >>> 10 & 1023, p & 1023, p >>> 20, colors[i]);
+        }
+    }
+
+    /**
+     * Copies this into a new {@code byte[sizeX][sizeY][sizeZ]}.
+     */
+    public byte[][][] toArray() {
+        final byte[][][] voxels = new byte[sizeX][sizeY][sizeZ];
+        for (int i = 0; i < positions.length; i++) {
+            final int p = positions[i];
+            voxels[p >>> 10 & 1023][p & 1023][p >>> 20] = colors[i];
+        }
+        return voxels;
+    }
+
+    /**
+     * Like {@link Tools3D#blockyScale(byte[][][])}, this makes each voxel into a 2x2x2 block of the same color, but
+     * it never allocates the doubled cube; the result has 8 times as many voxels as this, and keeps them sorted.
+     * @return a new SparseVoxels twice as large on each axis
+     */
+    public SparseVoxels blockyScale() {
+        final int n = positions.length;
+        final int[] nextPositions = new int[n << 3];
+        final byte[] nextColors = new byte[n << 3];
+        int o = 0;
+        // each run of voxels with the same z becomes two layers, and within a layer,
+        // each run with the same x becomes two rows; doubling y keeps each row sorted.
+        for (int zStart = 0, zEnd; zStart < n; zStart = zEnd) {
+            final int z = positions[zStart] >>> 20;
+            zEnd = zStart;
+            while (zEnd < n && positions[zEnd] >>> 20 == z) zEnd++;
+            for (int zz = z << 1; zz <= (z << 1 | 1); zz++) {
+                for (int xStart = zStart, xEnd; xStart < zEnd; xStart = xEnd) {
+                    final int x = positions[xStart] >>> 10 & 1023;
+                    xEnd = xStart;
+                    while (xEnd < zEnd && (positions[xEnd] >>> 10 & 1023) == x) xEnd++;
+                    for (int xx = x << 1; xx <= (x << 1 | 1); xx++) {
+                        for (int i = xStart; i < xEnd; i++) {
+                            final int yy = (positions[i] & 1023) << 1;
+                            nextPositions[o] = zz << 20 | xx << 10 | yy;
+                            nextColors[o++] = colors[i];
+                            nextPositions[o] = zz << 20 | xx << 10 | yy | 1;
+                            nextColors[o++] = colors[i];
+                        }
+                    }
+                }
+            }
+        }
+        return new SparseVoxels(sizeX << 1, sizeY << 1, sizeZ << 1, nextPositions, nextColors);
+    }
+}
@@ -0,0 +1,37 @@
+package voxswirl.physical;
+
+/**
+ * A {@link SparseVoxels} holding only the surface of a model, made by {@link Tools3D#surface(byte[][][])}, plus which
+ * of each voxel's six neighbors are occupied. Since this is a {@link VoxelGrid}, any renderer can draw it in place of
+ * the full model; a solid model has far fewer surface voxels than voxels in total.
+ * <br>
+ * Each item in {@link #faces} has one bit per face, set if the neighbor across that face is occupied:
+ * {@link #X_MINUS}, {@link #Y_MINUS}, {@link #Z_MINUS}, {@link #X_PLUS}, {@link #Y_PLUS}, and {@link #Z_PLUS}. A face
+ * whose bit is not set is exposed; since every voxel here is on the surface, at least one bit is always clear.
+ */
+public class SurfaceVoxels extends SparseVoxels {
+    public static final int X_MINUS = 1, Y_MINUS = 2, Z_MINUS = 4, X_PLUS = 8, Y_PLUS = 16, Z_PLUS = 32,
+            ALL_FACES = 63;
+    /**
+     * The face-occupancy bits of each voxel, in the same order as {@link #positions}.
+     */
+    public final byte[] faces;
+
+    /**
+     * Uses the given arrays directly; positions must be sorted in ascending order, colors must not contain 0, and all
+     * three arrays must have the same length.
+     */
+    public SurfaceVoxels(int sizeX, int sizeY, int sizeZ, int[] positions, byte[] colors, byte[] faces) {
+        super(sizeX, sizeY, sizeZ, positions, colors);
+        if(faces.length != positions.length)
+            throw new IllegalArgumentException("faces and positions must have the same length");
+        this.faces = faces;
+    }
+
+    /**
+     * Gets the exposed faces of the voxel at index {@code i} in {@link #positions}, as bits like {@link #faces} uses.
+     */
+    public int exposed(int i) {
+        return ~faces[i] & ALL_FACES;
+    }
+}
@@ -1,9 +1,16 @@
 package voxswirl.physical;
 
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntMap;
 import com.github.tommyettinger.anim8.PaletteReducer;
 import voxswirl.io.VoxIO;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Just laying some foundation for 3D array manipulation.
@@ -11,6 +18,43 @@ import java.util.Arrays;
  */
 public class Tools3D {
 
+    /**
+     * Work on the x-slab from start (inclusive) to end (exclusive) of a 3D array, for {@link #inSlabs(int, Slab)}.
+     */
+    private interface Slab {
+        void run(int start, int end);
+    }
+
+    /**
+     * Splits x from 0 to size into slabs and runs them on the common {@link ForkJoinPool}, returning once all are done.
+     * The slabs may run in any order and at the same time, so each must only write cells no other slab reads or writes.
+     */
+    private static void inSlabs(int size, final Slab slab) {
+        final int chunks = Math.min(size, ForkJoinPool.getCommonPoolParallelism() * 4);
+        if(chunks <= 1) {
+            slab.run(0, size);
+            return;
+        }
+        final ArrayList<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int from = size * c / chunks, to = size * (c + 1) / chunks;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    slab.run(from, to);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> f : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new GdxRuntimeException("Could not process voxels", e);
+        }
+    }
+
     public static byte[][][] deepCopy(byte[][][] voxels)
     {
         int xs, ys, zs;
@@ -182,6 +226,41 @@ public class Tools3D {
     {
         return countNot(voxels, 0);
     }
+    /**
+     * Copies the non-zero cells of {@code voxels} into a {@link SparseVoxels}, which renderers can draw without
+     * visiting empty cells.
+     */
+    public static SparseVoxels sparse(byte[][][] voxels)
+    {
+        return SparseVoxels.from(voxels);
+    }
+
+    /**
+     * Copies any {@link VoxelGrid} into a new {@code byte[sizeX][sizeY][sizeZ]}, for the methods here that need to
+     * look up neighbors, like {@link #soakInPlace(byte[][][])}.
+     */
+    public static byte[][][] dense(VoxelGrid grid)
+    {
+        final byte[][][] voxels = new byte[grid.sizeX()][grid.sizeY()][grid.sizeZ()];
+        grid.forEach(new VoxelGrid.Visitor() {
+            @Override
+            public void visit(int x, int y, int z, byte color) {
+                voxels[x][y][z] = color;
+            }
+        });
+        return voxels;
+    }
+
+    /**
+     * Like {@link #blockyScale(byte[][][])}, but for any {@link VoxelGrid}; a {@link SparseVoxels} stays sparse, so
+     * the doubled cube is never allocated.
+     */
+    public static VoxelGrid blockyScale(VoxelGrid grid)
+    {
+        if(grid instanceof SparseVoxels)
+            return ((SparseVoxels) grid).blockyScale();
+        return new DenseVoxels(blockyScale(grid instanceof DenseVoxels ? ((DenseVoxels) grid).voxels : dense(grid)));
+    }
     public static int count(byte[][][] voxels, int match)
     {
         final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
@@ -196,72 +275,239 @@ public class Tools3D {
         }
         return c;
     }
+    /**
+     * Smooths voxels with a cellular automaton, smoothLevel times. Each step sets a voxel to the most common non-empty
+     * color among it and its 26 neighbors (the lowest color index if several tie), as long as that color fills more
+     * than a third as many of those 27 cells as are empty; voxels with 23 or more empty cells there become empty, and
+     * voxels on the edge of the array or with color 2 are left as they were.
+     * <br>
+     * Counts of colors are kept for a 3x3x3 window that slides along z, adding and removing one 3x3 layer per voxel
+     * instead of recounting all 27, and only the colors actually in the window are searched for the most common one.
+     * Stretches of z with nothing near them are found with an {@link Occupancy} and skipped.
+     * @param voxels a 3D byte array indexed by x, y, then z; will not be modified
+     * @param smoothLevel how many steps to run; if less than 1, voxels is returned as-is
+     * @return a new 3D byte array with the same size as voxels, unless smoothLevel is less than 1
+     */
     public static byte[][][] runCA(byte[][][] voxels, int smoothLevel)
     {
         if(smoothLevel < 1)
             return voxels;
         final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
-        //Dictionary<byte, int> colorCount = new Dictionary<byte, int>();
-        int[] colorCount = new int[256];
-        byte[][][] vs0 = deepCopy(voxels), vs1 = new byte[xs][ys][zs];
+        final Neighborhood window = new Neighborhood();
+        byte[][][] vs0 = voxels, vs1 = new byte[xs][ys][zs];
+        Occupancy filled = new Occupancy(voxels), next = new Occupancy(xs, ys, zs);
         for(int v = 0; v < smoothLevel; v++)
         {
             if(v >= 1)
             {
-                deepCopyInto(vs1, vs0);
-                //fetch(vs1, (byte) 0);
+                // the last step's result is read by this one, and the array before it is reused, except for voxels
+                final byte[][][] vt = vs0 == voxels ? new byte[xs][ys][zs] : vs0;
+                vs0 = vs1;
+                vs1 = vt;
+                final Occupancy ot = filled;
+                filled = next;
+                next = ot;
             }
-            for(int x = 0; x < xs; x++)
+            runCASlab(vs0, filled, vs1, next, window, 0, xs);
+        }
+        return vs1;
+    }
+
+    /**
+     * Like {@link #runCA(byte[][][], int)}, but splits each step into slabs of x that run on the common
+     * {@link ForkJoinPool}. Each step only reads the previous one, so the result is exactly the same.
+     */
+    public static byte[][][] runCAParallel(byte[][][] voxels, int smoothLevel)
+    {
+        if(smoothLevel < 1)
+            return voxels;
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        byte[][][] vs0 = voxels, vs1 = new byte[xs][ys][zs];
+        Occupancy filled = new Occupancy(voxels), next = new Occupancy(xs, ys, zs);
+        for(int v = 0; v < smoothLevel; v++)
+        {
+            if(v >= 1)
             {
-                for(int y = 0; y < ys; y++)
+                final byte[][][] vt = vs0 == voxels ? new byte[xs][ys][zs] : vs0;
+                vs0 = vs1;
+                vs1 = vt;
+                final Occupancy ot = filled;
+                filled = next;
+                next = ot;
+            }
+            final byte[][][] src = vs0, dest = vs1;
+            final Occupancy srcFilled = filled, destFilled = next;
+            inSlabs(xs, new Slab() {
+                @Override
+                public void run(int xStart, int xEnd) {
+                    runCASlab(src, srcFilled, dest, destFilled, new Neighborhood(), xStart, xEnd);
+                }
+            });
+        }
+        return vs1;
+    }
+
+    /**
+     * Counts of each color in the 3x3x3 window used by {@link #runCA(byte[][][], int)}, along with which non-empty
+     * colors are in it and which of those is most common, so a step can find the winner without looking at all 255.
+     */
+    private static final class Neighborhood {
+        final int[] counts = new int[256];
+        /**
+         * The non-empty colors with a count above 0, in no order; present[positions[c]] == c for each of them.
+         */
+        final int[] present = new int[27], positions = new int[256];
+        int size, empty;
+        /**
+         * The most common non-empty color, the lowest one if several tie, or 0 if there are none.
+         */
+        int best;
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                counts[present[i]] = 0;
+            }
+            size = 0;
+            empty = 0;
+            best = 0;
+        }
+
+        void add(int color) {
+            if(color == 0) {
+                empty++;
+                return;
+            }
+            if(counts[color]++ == 0) {
+                positions[color] = size;
+                present[size++] = color;
+            }
+            if(best == 0 || counts[color] > counts[best] || counts[color] == counts[best] && color < best)
+                best = color;
+        }
+
+        void remove(int color) {
+            if(color == 0) {
+                empty--;
+                return;
+            }
+            if(--counts[color] == 0) {
+                final int last = present[--size];
+                present[positions[color]] = last;
+                positions[last] = positions[color];
+            }
+            // lowering any other color can't change which is most common, but lowering this one can
+            if(color == best) {
+                best = 0;
+                for (int i = 0; i < size; i++) {
+                    final int c = present[i];
+                    if(best == 0 || counts[c] > counts[best] || counts[c] == counts[best] && c < best)
+                        best = c;
+                }
+            }
+        }
+
+        void addLayer(byte[][][] vs0, int x, int y, int z) {
+            for (int xx = x - 1; xx <= x + 1; xx++) {
+                for (int yy = y - 1; yy <= y + 1; yy++) {
+                    add(vs0[xx][yy][z] & 255);
+                }
+            }
+        }
+
+        void removeLayer(byte[][][] vs0, int x, int y, int z) {
+            for (int xx = x - 1; xx <= x + 1; xx++) {
+                for (int yy = y - 1; yy <= y + 1; yy++) {
+                    remove(vs0[xx][yy][z] & 255);
+                }
+            }
+        }
+
+        /**
+         * @return the color the middle of the window becomes
+         */
+        byte result() {
+            if(empty >= 23 || best == 0 || counts[best] <= empty / 3)
+                return 0;
+            return (byte) best;
+        }
+    }
+
+    /**
+     * One step of {@link #runCA(byte[][][], int)} for x from xStart (inclusive) to xEnd (exclusive), reading vs0 and
+     * writing vs1. filled must hold which cells of vs0 are non-empty, and next is set to which cells of vs1 are.
+     */
+    private static void runCASlab(byte[][][] vs0, Occupancy filled, byte[][][] vs1, Occupancy next,
+                                  Neighborhood window, int xStart, int xEnd)
+    {
+        final int xs = vs0.length, ys = vs0[0].length, zs = vs0[0][0].length, wordsZ = filled.wordsZ;
+        for(int x = xStart; x < xEnd; x++)
+        {
+            for(int y = 0; y < ys; y++)
+            {
+                final byte[] column0 = vs0[x][y], column1 = vs1[x][y];
+                final int i = (x * ys + y) * wordsZ;
+                if(x == 0 || y == 0 || x == xs - 1 || y == ys - 1)
+                {
+                    // edges are copied as they are
+                    System.arraycopy(column0, 0, column1, 0, zs);
+                    System.arraycopy(filled.bits, i, next.bits, i, wordsZ);
+                    continue;
+                }
+                // finds the lowest and highest z that any of the 9 columns around this one fill
+                int low = -1, high = -1;
+                for(int w = 0; w < wordsZ; w++)
                 {
-                    for(int z = 0; z < zs; z++)
+                    long near = 0L;
+                    for(int xx = x - 1; xx <= x + 1; xx++)
                     {
-                        Arrays.fill(colorCount, 0);
-                        if(x == 0 || y == 0 || z == 0 || x == xs - 1 || y == ys - 1 || z == zs - 1 || vs0[x][y][z] == 2)
+                        for(int yy = y - 1; yy <= y + 1; yy++)
                         {
-                            colorCount[vs0[x][y][z] & 255] = 10000;
-                            colorCount[0] = -100000;
-                        }
-                        else
-                        {
-                            for(int xx = -1; xx < 2; xx++)
-                            {
-                                for(int yy = -1; yy < 2; yy++)
-                                {
-                                    for(int zz = -1; zz < 2; zz++)
-                                    {
-                                        byte smallColor = vs0[x + xx][y + yy][z + zz];
-                                        colorCount[smallColor & 255]++;
-                                    }
-                                }
-                            }
+                            near |= filled.bits[(xx * ys + yy) * wordsZ + w];
                         }
-                        if(colorCount[0] >= 23)
+                    }
+                    if(near != 0L)
+                    {
+                        if(low < 0) low = w << 6 | Long.numberOfTrailingZeros(near);
+                        high = w << 6 | 63 - Long.numberOfLeadingZeros(near);
+                    }
+                    next.bits[i + w] = 0L;
+                }
+                if(low < 0)
+                {
+                    Arrays.fill(column1, (byte) 0);
+                    continue;
+                }
+                // a window centered further than 1 away from everything filled is all empty
+                final int zStart = Math.max(low - 1, 0), zEnd = Math.min(high + 1, zs - 1);
+                Arrays.fill(column1, 0, zStart, (byte) 0);
+                Arrays.fill(column1, zEnd + 1, zs, (byte) 0);
+                final int first = Math.max(zStart, 1);
+                window.clear();
+                for(int z = zStart; z <= zEnd; z++)
+                {
+                    final byte color;
+                    if(z == 0 || z == zs - 1)
+                        color = column0[z];
+                    else
+                    {
+                        if(z == first)
                         {
-                            vs1[x][y][z] = 0;
+                            window.addLayer(vs0, x, y, z - 1);
+                            window.addLayer(vs0, x, y, z);
                         }
                         else
-                        {
-                            byte max = 0;
-                            int cc = colorCount[0] / 3, tmp;
-                            for(byte idx = 1; idx != 0; idx++)
-                            {
-                                tmp = colorCount[idx & 255];
-                                if(tmp > 0 && tmp > cc)
-                                {
-                                    cc = tmp;
-                                    max = idx;
-                                }
-                            }
-                            vs1[x][y][z] = max;
-                        }
+                            window.removeLayer(vs0, x, y, z - 2);
+                        window.addLayer(vs0, x, y, z + 1);
+                        color = column0[z] == 2 ? 2 : window.result();
                     }
+                    column1[z] = color;
+                    if(color != 0)
+                        next.bits[i + (z >>> 6)] |= 1L << z;
                 }
             }
         }
-        return vs1;
     }
+
     
     private static void writeSlope(byte[][][] voxels, int x, int y, int z, int slope, byte color){
         voxels[x<<1][y<<1][z<<1] = ((slope & 1) != 0) ? color : 0;
@@ -281,8 +527,41 @@ public class Tools3D {
         byte[][][] nextColors = new byte[limitX+1][limitY+1][limitZ+1];
         byte[][][] nextSlopes = new byte[limitX+1][limitY+1][limitZ+1];
         byte[][][] result = new byte[limitX+1<<1][limitY+1<<1][limitZ+1<<1];
+        smoothSlopes(voxels, nextColors, nextSlopes, 0, limitX + 1);
+        smoothFill(nextColors, nextSlopes, result, 0, limitX + 1);
+        return result;
+    }
+
+    /**
+     * Like {@link #smoothScale(byte[][][])}, but splits both of its passes into slabs of x that run on the common
+     * {@link ForkJoinPool}. The second pass only starts once the first is done, so the result is exactly the same.
+     */
+    public static byte[][][] smoothScaleParallel(byte[][][] voxels) {
+        final int sizeX = voxels.length, sizeY = voxels[0].length, sizeZ = voxels[0][0].length;
+        final byte[][][] nextColors = new byte[sizeX][sizeY][sizeZ];
+        final byte[][][] nextSlopes = new byte[sizeX][sizeY][sizeZ];
+        final byte[][][] result = new byte[sizeX<<1][sizeY<<1][sizeZ<<1];
+        inSlabs(sizeX, new Slab() {
+            @Override
+            public void run(int xStart, int xEnd) {
+                smoothSlopes(voxels, nextColors, nextSlopes, xStart, xEnd);
+            }
+        });
+        inSlabs(sizeX, new Slab() {
+            @Override
+            public void run(int xStart, int xEnd) {
+                smoothFill(nextColors, nextSlopes, result, xStart, xEnd);
+            }
+        });
+        return result;
+    }
+
+    private static void smoothSlopes(byte[][][] voxels, byte[][][] nextColors, byte[][][] nextSlopes, int xStart, int xEnd) {
+        final int limitX = voxels.length - 1;
+        final int limitY = voxels[0].length - 1;
+        final int limitZ = voxels[0][0].length - 1;
         final int[] neighbors = new int[6];
-        for (int x = 0; x <= limitX; x++) {
+        for (int x = xStart; x < xEnd; x++) {
             for (int y = 0; y <= limitY; y++) {
                 PER_CELL:
                 for (int z = 0; z <= limitZ; z++) {
@@ -327,8 +606,14 @@ public class Tools3D {
                 }
             }
         }
+    }
 
-        for (int x = 0; x <= limitX; x++) {
+    private static void smoothFill(byte[][][] nextColors, byte[][][] nextSlopes, byte[][][] result, int xStart, int xEnd) {
+        final int limitX = nextColors.length - 1;
+        final int limitY = nextColors[0].length - 1;
+        final int limitZ = nextColors[0][0].length - 1;
+        final int[] neighbors = new int[6];
+        for (int x = xStart; x < xEnd; x++) {
             for (int y = 0; y <= limitY; y++) {
                 PER_CELL:
                 for (int z = 0; z <= limitZ; z++) {
@@ -370,14 +655,33 @@ public class Tools3D {
                 }
             }
         }
-        return result;
     }
 
     public static byte[][][] blockyScale(byte[][][] voxels) {
         return blockyScale(voxels, new byte[voxels.length << 1][voxels[0].length << 1][voxels[0][0].length << 1]);
     }
     public static byte[][][] blockyScale(byte[][][] voxels, byte[][][] result) {
-        for (int x = 0; x < voxels.length; x++) {
+        blockyScaleSlab(voxels, result, 0, voxels.length);
+        return result;
+    }
+
+    /**
+     * Like {@link #blockyScale(byte[][][])}, but splits x into slabs that run on the common {@link ForkJoinPool}.
+     * Each voxel only writes its own 2x2x2 block, so the result is exactly the same.
+     */
+    public static byte[][][] blockyScaleParallel(byte[][][] voxels) {
+        final byte[][][] result = new byte[voxels.length << 1][voxels[0].length << 1][voxels[0][0].length << 1];
+        inSlabs(voxels.length, new Slab() {
+            @Override
+            public void run(int xStart, int xEnd) {
+                blockyScaleSlab(voxels, result, xStart, xEnd);
+            }
+        });
+        return result;
+    }
+
+    private static void blockyScaleSlab(byte[][][] voxels, byte[][][] result, int xStart, int xEnd) {
+        for (int x = xStart; x < xEnd; x++) {
             for (int y = 0; y < voxels[x].length; y++) {
                 for (int z = 0; z < voxels[x][y].length; z++) {
                     byte v = voxels[x][y][z];
@@ -392,7 +696,6 @@ public class Tools3D {
                 }
             }
         }
-        return result;
     }
 
     public static byte[][][] simpleScale(byte[][][] voxels) {
@@ -402,8 +705,41 @@ public class Tools3D {
         byte[][][] nextColors = new byte[limitX+1][limitY+1][limitZ+1];
         byte[][][] nextSlopes = new byte[limitX+1][limitY+1][limitZ+1];
         byte[][][] result = new byte[limitX+1<<1][limitY+1<<1][limitZ+1<<1];
+        simpleSlopes(voxels, nextColors, nextSlopes, 0, limitX + 1);
+        simpleFill(nextColors, nextSlopes, result, 0, limitX + 1);
+        return result;
+    }
+
+    /**
+     * Like {@link #simpleScale(byte[][][])}, but splits both of its passes into slabs of x that run on the common
+     * {@link ForkJoinPool}. The second pass only starts once the first is done, so the result is exactly the same.
+     */
+    public static byte[][][] simpleScaleParallel(byte[][][] voxels) {
+        final int sizeX = voxels.length, sizeY = voxels[0].length, sizeZ = voxels[0][0].length;
+        final byte[][][] nextColors = new byte[sizeX][sizeY][sizeZ];
+        final byte[][][] nextSlopes = new byte[sizeX][sizeY][sizeZ];
+        final byte[][][] result = new byte[sizeX<<1][sizeY<<1][sizeZ<<1];
+        inSlabs(sizeX, new Slab() {
+            @Override
+            public void run(int xStart, int xEnd) {
+                simpleSlopes(voxels, nextColors, nextSlopes, xStart, xEnd);
+            }
+        });
+        inSlabs(sizeX, new Slab() {
+            @Override
+            public void run(int xStart, int xEnd) {
+                simpleFill(nextColors, nextSlopes, result, xStart, xEnd);
+            }
+        });
+        return result;
+    }
+
+    private static void simpleSlopes(byte[][][] voxels, byte[][][] nextColors, byte[][][] nextSlopes, int xStart, int xEnd) {
+        final int limitX = voxels.length - 1;
+        final int limitY = voxels[0].length - 1;
+        final int limitZ = voxels[0][0].length - 1;
         final int[] neighbors = new int[6];
-        for (int x = 0; x <= limitX; x++) {
+        for (int x = xStart; x < xEnd; x++) {
             for (int y = 0; y <= limitY; y++) {
                 PER_CELL:
                 for (int z = 0; z <= limitZ; z++) {
@@ -450,8 +786,14 @@ public class Tools3D {
                 }
             }
         }
+    }
 
-        for (int x = 0; x <= limitX; x++) {
+    private static void simpleFill(byte[][][] nextColors, byte[][][] nextSlopes, byte[][][] result, int xStart, int xEnd) {
+        final int limitX = nextColors.length - 1;
+        final int limitY = nextColors[0].length - 1;
+        final int limitZ = nextColors[0][0].length - 1;
+        final int[] neighbors = new int[6];
+        for (int x = xStart; x < xEnd; x++) {
             for (int y = 0; y <= limitY; y++) {
                 PER_CELL:
                 for (int z = 0; z <= limitZ; z++) {
@@ -493,7 +835,6 @@ public class Tools3D {
                 }
             }
         }
-        return result;
     }
 
     public static int firstTight(byte[][][] voxels)
@@ -586,37 +927,16 @@ public class Tools3D {
         return totalSize + size;
     }
 
+    /**
+     * Copies only the largest face-connected part of voxels, using {@link Components#label(byte[][][])}; if several
+     * parts are equally large, the one whose first voxel comes first in x, y, z order is kept.
+     * @param voxels a 3D byte array indexed by x, y, then z; will not be modified
+     * @return a new 3D byte array with the same size as voxels, holding only its largest part
+     */
     public static byte[][][] largestPart(byte[][][] voxels)
     {
-        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
-        int fst = firstTight(voxels), bestSize = 0, currentSize, x, y, z;
-
-        byte[][][] remaining = deepCopy(voxels), filled = new byte[xs][ys][zs],
-                choice = new byte[xs][ys][zs];
-        while (fst >= 0) {
-            fill(filled, 0);
-            x = fst / (ys * zs);
-            y = (fst / zs) % ys;
-            z = fst % zs;
-            filled[x][y][z] = voxels[x][y][z];
-            currentSize = flood(filled, remaining);
-            if(currentSize > bestSize)
-            {
-                bestSize = currentSize;
-                deepCopyInto(filled, choice);
-            }
-
-            for (x = 0; x < xs; x++) {
-                for (y = 0; y < ys; y++) {
-                    for (z = 0; z < zs; z++) {
-                        if(filled[x][y][z] != 0)
-                            remaining[x][y][z] = 0;
-                    }
-                }
-            }
-            fst = firstTight(remaining);
-        }
-        return choice;
+        final Components parts = Components.label(voxels);
+        return parts.extract(voxels, parts.largest());
     }
 
     public static byte[][][] translateCopy(byte[][][] voxels, int xMove, int yMove, int zMove)
@@ -672,48 +992,146 @@ public class Tools3D {
         return -1;
     }
     
-    public static void soakInPlace(byte[][][] voxels)
+    /**
+     * Copies only the surface voxels of {@code voxels}, those with at least one empty neighbor across a face, into a
+     * {@link SurfaceVoxels} that also records which neighbors of each voxel are occupied. Any renderer can draw the
+     * result, and solid models have a small fraction of their voxels on the surface. Renderers briefly draw voxels
+     * that nearer ones cover later, which can nudge the shading, so on some models a render of only the surface
+     * differs from a full render in a few pixels; {@link #shell(byte[][][], int)} with a depth of 3 avoids that at the
+     * cost of keeping more voxels.
+     * @param voxels a 3D byte array indexed by x, y, then z; will not be modified
+     * @return a new SurfaceVoxels with the same size as voxels, holding only its surface
+     */
+    public static SurfaceVoxels surface(byte[][][] voxels)
     {
         final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
-        byte b;
-        for (int x = 0; x < xs; x++) {
-            for (int y = 0; y < ys; y++) {
-                for (int z = 0; z < zs; z++) {
-                    if(isSurface(voxels, x, y, z) > 0){
-                        b = voxels[x][y][z];
-                        if(isSurface(voxels, x, y, z-1) == -1) voxels[x][y][z-1] = b;
-                        if(isSurface(voxels, x-1, y, z) == -1) voxels[x-1][y][z] = b;
-                        if(isSurface(voxels, x, y-1, z) == -1) voxels[x][y-1][z] = b;
-                        if(isSurface(voxels, x+1, y, z) == -1) voxels[x+1][y][z] = b;
-                        if(isSurface(voxels, x, y+1, z) == -1) voxels[x][y+1][z] = b;
-                        if(isSurface(voxels, x, y, z+1) == -1) voxels[x][y][z+1] = b;
+        final Occupancy filled = new Occupancy(voxels), surface = filled.surface();
+        final int n = surface.count();
+        final int[] positions = new int[n];
+        final byte[] colors = new byte[n], faces = new byte[n];
+        int i = 0;
+        for (int z = 0; z < zs; z++) {
+            for (int x = 0; x < xs; x++) {
+                for (int y = 0; y < ys; y++) {
+                    if(surface.get(x, y, z)) {
+                        positions[i] = z << 20 | x << 10 | y;
+                        colors[i] = voxels[x][y][z];
+                        faces[i++] = (byte) filled.faces(x, y, z);
                     }
                 }
             }
         }
+        return new SurfaceVoxels(xs, ys, zs, positions, colors, faces);
+    }
+
+    /**
+     * Fills each hidden voxel (one with no empty neighbor across a face) that touches the surface with the color of a
+     * surface voxel next to it, so the colors of the surface seep one layer inward.
+     * @param voxels a 3D byte array indexed by x, y, then z; will be modified
+     */
+    public static void soakInPlace(byte[][][] voxels)
+    {
+        soakSlab(voxels, new Occupancy(voxels), voxels, true, 0, voxels.length);
     }
 
+    /**
+     * Like {@link #soakInPlace(byte[][][])}, but returns a new array with only the surface and the voxels it soaked
+     * into, leaving any hidden voxels deeper than that empty.
+     * @param voxels a 3D byte array indexed by x, y, then z; will not be modified
+     * @return a new 3D byte array with the same size as voxels
+     */
     public static byte[][][] soak(byte[][][] voxels)
     {
-        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
-        byte[][][] next = new byte[xs][ys][zs];
-        byte b;
-        for (int x = 0; x < xs; x++) {
+        final byte[][][] next = new byte[voxels.length][voxels[0].length][voxels[0][0].length];
+        soakSlab(voxels, new Occupancy(voxels), next, false, 0, voxels.length);
+        return next;
+    }
+
+    /**
+     * Like {@link #soak(byte[][][])}, but splits x into slabs that run on the common {@link ForkJoinPool}. Each cell
+     * is only written by the slab it is in, so the result is exactly the same.
+     */
+    public static byte[][][] soakParallel(final byte[][][] voxels)
+    {
+        final byte[][][] next = new byte[voxels.length][voxels[0].length][voxels[0][0].length];
+        final Occupancy filled = new Occupancy(voxels);
+        inSlabs(voxels.length, new Slab() {
+            @Override
+            public void run(int xStart, int xEnd) {
+                soakSlab(voxels, filled, next, false, xStart, xEnd);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Like {@link #soakInPlace(byte[][][])}, but splits x into slabs that run on the common {@link ForkJoinPool}.
+     * Slabs only read the colors of surface voxels, which never change, and take which cells are empty from an
+     * {@link Occupancy} made first; the only cells they write are hidden ones in their own slab, so the result is
+     * exactly the same as soakInPlace().
+     */
+    public static void soakInPlaceParallel(final byte[][][] voxels)
+    {
+        final Occupancy filled = new Occupancy(voxels);
+        inSlabs(voxels.length, new Slab() {
+            @Override
+            public void run(int xStart, int xEnd) {
+                soakSlab(voxels, filled, voxels, true, xStart, xEnd);
+            }
+        });
+    }
+
+    /**
+     * Does the work of {@link #soak(byte[][][])} (or with inPlace, {@link #soakInPlace(byte[][][])}) for x from xStart
+     * (inclusive) to xEnd (exclusive). Each hidden voxel takes the color of its surface neighbor that comes last in x,
+     * then y, then z order; that is the color that would end up there if each surface voxel, in that order, wrote its
+     * color into its hidden neighbors. Soaking never changes which cells are empty, so filled can be made once, before
+     * any cells change, and 64 cells along z are checked at once; columns of empty or hidden cells are skipped
+     * entirely.
+     * @param voxels the colors to read
+     * @param filled which cells of voxels are filled
+     * @param next where to write; may be voxels if inPlace is true, or must start empty otherwise
+     * @param inPlace if true, surface voxels and hidden voxels with no surface neighbor are not written; if false,
+     *                surface voxels are copied into next
+     */
+    private static void soakSlab(byte[][][] voxels, Occupancy filled, byte[][][] next, boolean inPlace,
+                                 int xStart, int xEnd)
+    {
+        final int ys = filled.sizeY, words = filled.wordsZ;
+        for (int x = xStart; x < xEnd; x++) {
             for (int y = 0; y < ys; y++) {
-                for (int z = 0; z < zs; z++) {
-                    if(isSurface(voxels, x, y, z) > 0){
-                        next[x][y][z] = b = voxels[x][y][z];
-                        if(isSurface(voxels, x, y, z-1) == -1) next[x][y][z-1] = b;
-                        if(isSurface(voxels, x-1, y, z) == -1) next[x-1][y][z] = b;
-                        if(isSurface(voxels, x, y-1, z) == -1) next[x][y-1][z] = b;
-                        if(isSurface(voxels, x+1, y, z) == -1) next[x+1][y][z] = b;
-                        if(isSurface(voxels, x, y+1, z) == -1) next[x][y+1][z] = b;
-                        if(isSurface(voxels, x, y, z+1) == -1) next[x][y][z+1] = b;
+                for (int w = 0; w < words; w++) {
+                    final long occupied = filled.word(x, y, w);
+                    if(occupied == 0L) continue;
+                    final long surface = filled.surfaceWord(x, y, w), hidden = occupied & ~surface;
+                    if(!inPlace) {
+                        for (long s = surface; s != 0L; s &= s - 1) {
+                            final int z = w << 6 | Long.numberOfTrailingZeros(s);
+                            next[x][y][z] = voxels[x][y][z];
+                        }
+                    }
+                    if(hidden == 0L) continue;
+                    // which hidden cells have a surface neighbor in each direction, 64 at a time
+                    final long px = hidden & filled.surfaceWord(x + 1, y, w),
+                            py = hidden & filled.surfaceWord(x, y + 1, w),
+                            pz = hidden & (surface >>> 1 | filled.surfaceWord(x, y, w + 1) << 63),
+                            mz = hidden & (surface << 1 | filled.surfaceWord(x, y, w - 1) >>> 63),
+                            my = hidden & filled.surfaceWord(x, y - 1, w),
+                            mx = hidden & filled.surfaceWord(x - 1, y, w);
+                    for (long h = px | py | pz | mz | my | mx; h != 0L; h &= h - 1) {
+                        final long bit = h & -h;
+                        final int z = w << 6 | Long.numberOfTrailingZeros(h);
+                        // neighbors from last to first in x, y, z order
+                        if((px & bit) != 0L) next[x][y][z] = voxels[x + 1][y][z];
+                        else if((py & bit) != 0L) next[x][y][z] = voxels[x][y + 1][z];
+                        else if((pz & bit) != 0L) next[x][y][z] = voxels[x][y][z + 1];
+                        else if((mz & bit) != 0L) next[x][y][z] = voxels[x][y][z - 1];
+                        else if((my & bit) != 0L) next[x][y][z] = voxels[x][y - 1][z];
+                        else next[x][y][z] = voxels[x - 1][y][z];
                     }
                 }
             }
         }
-        return next;
     }
 
     public static byte[][][] scaleAndSoak(byte[][][] voxels) {
@@ -722,11 +1140,108 @@ public class Tools3D {
         return voxels;
     }
 
+    /**
+     * Copies only the voxels near the outside of a model into a {@link SparseVoxels}: those with an empty cell, or the
+     * edge of the array, within {@code depth} cells on every axis at once (so diagonal steps count as one cell). The
+     * voxels deeper inside are hidden from every angle, and {@link #soakInPlace(byte[][][])} fills them anyway, so
+     * solid models lose most of their voxels here.
+     * <br>
+     * Renderers briefly draw voxels that nearer ones cover later, and those can still nudge the shading, so a depth of
+     * 1 (only the outermost layer) can change a few pixels of a render; a depth of 3 has matched a render of every
+     * voxel on all the models in {@code vox/}.
+     * @param voxels a 3D byte array indexed by x, y, then z; will not be modified
+     * @param depth how many layers to keep, at least 1
+     * @return a new SparseVoxels with the same size as voxels, holding only its outer layers
+     */
+    public static SparseVoxels shell(byte[][][] voxels, int depth)
+    {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        // deep starts as "occupied", then each pass keeps only cells with depth occupied cells on both sides on
+        // one axis; after all three passes, it marks the cells with no empty cell near them.
+        final boolean[][][] deep = new boolean[xs][ys][zs];
+        final int[] run = new int[Math.max(xs, Math.max(ys, zs))];
+        int r;
+        for (int y = 0; y < ys; y++) {
+            for (int z = 0; z < zs; z++) {
+                r = 0;
+                for (int x = 0; x < xs; x++) {
+                    run[x] = r = voxels[x][y][z] == 0 ? 0 : r + 1;
+                }
+                r = 0;
+                for (int x = xs - 1; x >= 0; x--) {
+                    r = voxels[x][y][z] == 0 ? 0 : r + 1;
+                    deep[x][y][z] = run[x] > depth && r > depth;
+                }
+            }
+        }
+        for (int x = 0; x < xs; x++) {
+            for (int z = 0; z < zs; z++) {
+                r = 0;
+                for (int y = 0; y < ys; y++) {
+                    run[y] = r = deep[x][y][z] ? r + 1 : 0;
+                }
+                r = 0;
+                for (int y = ys - 1; y >= 0; y--) {
+                    r = deep[x][y][z] ? r + 1 : 0;
+                    deep[x][y][z] = run[y] > depth && r > depth;
+                }
+            }
+        }
+        for (int x = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                final boolean[] line = deep[x][y];
+                r = 0;
+                for (int z = 0; z < zs; z++) {
+                    run[z] = r = line[z] ? r + 1 : 0;
+                }
+                r = 0;
+                for (int z = zs - 1; z >= 0; z--) {
+                    r = line[z] ? r + 1 : 0;
+                    line[z] = run[z] > depth && r > depth;
+                }
+            }
+        }
+        int n = 0;
+        for (int x = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                for (int z = 0; z < zs; z++) {
+                    if(voxels[x][y][z] != 0 && !deep[x][y][z]) ++n;
+                }
+            }
+        }
+        final int[] positions = new int[n];
+        final byte[] colors = new byte[n];
+        int i = 0;
+        for (int z = 0; z < zs; z++) {
+            for (int x = 0; x < xs; x++) {
+                for (int y = 0; y < ys; y++) {
+                    final byte v = voxels[x][y][z];
+                    if(v != 0 && !deep[x][y][z]) {
+                        positions[i] = z << 20 | x << 10 | y;
+                        colors[i++] = v;
+                    }
+                }
+            }
+        }
+        return new SparseVoxels(xs, ys, zs, positions, colors);
+    }
+
     public static byte choose(int a, int b){
+        return choose(a, b, VoxIO.lastPalette);
+    }
+
+    /**
+     * Picks whichever of two palette indices is darker in {@code palette}, treating 0 as empty.
+     * @param a a palette index
+     * @param b a palette index
+     * @param palette 256 RGBA8888 colors, such as from {@link voxswirl.io.VoxModel#palette}
+     * @return a or b as a byte, whichever is darker, or the other if one is 0
+     */
+    public static byte choose(int a, int b, int[] palette){
         if(a == 0) return (byte) b;
         if(b == 0) return (byte) a;
-        int ac = PaletteReducer.shrink(VoxIO.lastPalette[a &= 255]);
-        int bc = PaletteReducer.shrink(VoxIO.lastPalette[b &= 255]);
+        int ac = PaletteReducer.shrink(palette[a &= 255]);
+        int bc = PaletteReducer.shrink(palette[b &= 255]);
 //        return PaletteReducer.OKLAB[1][ac] * PaletteReducer.OKLAB[1][ac] + PaletteReducer.OKLAB[2][ac] * PaletteReducer.OKLAB[2][ac]
 //                < PaletteReducer.OKLAB[1][bc] * PaletteReducer.OKLAB[1][bc] + PaletteReducer.OKLAB[2][bc] * PaletteReducer.OKLAB[2][bc]
 //                ? (byte) a : (byte) b;
@@ -748,13 +1263,45 @@ public class Tools3D {
 //                    ? (byte) a : (byte) b;
     }
 
+    /**
+     * Gets the lightness {@link #choose(int, int, int[])} compares for each color in palette, so that choosing many
+     * times with the same palette can use {@link #choose(int, int, float[])} instead of converting colors each time.
+     * @param palette up to 256 RGBA8888 colors; missing colors count as 0
+     * @return a new float array of 256 lightness values, one per palette index
+     */
+    public static float[] lightness(int[] palette){
+        final float[] lightness = new float[256];
+        for (int i = 0; i < 256; i++) {
+            lightness[i] = PaletteReducer.OKLAB[0][PaletteReducer.shrink(i < palette.length ? palette[i] : 0)];
+        }
+        return lightness;
+    }
+
+    /**
+     * Like {@link #choose(int, int, int[])}, but compares lightness values from {@link #lightness(int[])} instead of
+     * converting the colors, which is worth it when choosing many times with the same palette.
+     * @param a a palette index
+     * @param b a palette index
+     * @param lightness 256 lightness values, as from {@link #lightness(int[])}
+     * @return a or b as a byte, whichever is darker, or the other if one is 0
+     */
+    public static byte choose(int a, int b, float[] lightness){
+        if(a == 0) return (byte) b;
+        if(b == 0) return (byte) a;
+        return lightness[a & 255] < lightness[b & 255] ? (byte) a : (byte) b;
+    }
+
     public static byte chooseReverse(int a, int b){
+        return chooseReverse(a, b, VoxIO.lastPalette, VoxIO.lastMaterials);
+    }
+
+    public static byte chooseReverse(int a, int b, int[] palette, IntMap<VoxMaterial> materials){
         if(a == 0) return (byte) b;
         if(b == 0) return (byte) a;
-        int bc = VoxIO.lastPalette[a &= 255];
-        int ac = VoxIO.lastPalette[b &= 255];
-        VoxMaterial bm = VoxIO.lastMaterials.get(a);
-        VoxMaterial am = VoxIO.lastMaterials.get(b);
+        int bc = palette[a &= 255];
+        int ac = palette[b &= 255];
+        VoxMaterial bm = materials.get(a);
+        VoxMaterial am = materials.get(b);
 //        int ac = VoxIO.lastPalette[a &= 255];
 //        int bc = VoxIO.lastPalette[b &= 255];
 //        VoxMaterial am = VoxIO.lastMaterials.get(a);
@@ -772,29 +1319,74 @@ public class Tools3D {
                     ? (byte) a : (byte) b;
     }
     public static byte[][][] soakDouble(byte[][][] voxels)
+    {
+        return soakDouble(voxels, VoxIO.lastPalette);
+    }
+
+    /**
+     * Doubles the size of {@code voxels} on each axis, filling the gaps between surface voxels with whichever
+     * neighbor is darker in {@code palette}.
+     * @param voxels a 3D byte array of palette indices; will not be modified
+     * @param palette 256 RGBA8888 colors, such as from {@link voxswirl.io.VoxModel#palette}
+     * @return a new 3D byte array twice as large on each axis
+     */
+    public static byte[][][] soakDouble(byte[][][] voxels, int[] palette)
+    {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        byte[][][] next = new byte[xs << 1][ys << 1][zs << 1];
+        soakDoubleSlab(voxels, lightness(palette), next, 0, xs << 1);
+        return next;
+    }
+
+    /**
+     * Like {@link #soakDouble(byte[][][], int[])}, but splits the result into slabs of x that run on the common
+     * {@link ForkJoinPool}. Each voxel writes as far as 2 cells past its own in the result, so each slab also goes
+     * through the voxels just outside it, but only keeps what they write inside the slab; every cell is then written
+     * by one slab, in the same order soakDouble() writes it, so the result is exactly the same.
+     */
+    public static byte[][][] soakDoubleParallel(final byte[][][] voxels, final int[] palette)
+    {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        final byte[][][] next = new byte[xs << 1][ys << 1][zs << 1];
+        final float[] lightness = lightness(palette);
+        inSlabs(xs, new Slab() {
+            @Override
+            public void run(int xStart, int xEnd) {
+                soakDoubleSlab(voxels, lightness, next, xStart << 1, xEnd << 1);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Does the work of {@link #soakDouble(byte[][][], int[])}, but only writes cells of next with an x from lo
+     * (inclusive) to hi (exclusive).
+     */
+    private static void soakDoubleSlab(byte[][][] voxels, float[] lightness, byte[][][] next, int lo, int hi)
     {
         final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
-        final int x2 = xs << 1, y2 = ys << 1, z2 = zs << 1;
-        byte[][][] next = new byte[x2][y2][z2];
+        // voxels write up to 2 cells away in next, which is 1 voxel away
+        final int xStart = Math.max(0, (lo >> 1) - 1), xEnd = Math.min(xs, (hi + 1 >> 1) + 1);
         byte b;
-        for (int x = 0, xx = 0; x < xs; x++, xx += 2) {
+        for (int x = xStart, xx = xStart << 1; x < xEnd; x++, xx += 2) {
             for (int y = 0, yy = 0; y < ys; y++, yy += 2) {
                 for (int z = 0, zz = 0; z < zs; z++, zz += 2) {
                     if(isSurface(voxels, x, y, z) > 0){
-                        next[xx][yy][zz] = b = voxels[x][y][z];
-                        if(isSurface(voxels, x-1, y, z) == -1) { next[xx-1][yy][zz] = choose(next[xx-1][yy][zz], b); next[xx-2][yy][zz] = choose(next[xx-2][yy][zz], b); }
-                        else if(isSurface(voxels, x-1, y, z) > 0) { next[xx-1][yy][zz] = choose(b, voxels[x-1][y][z]); }
-                        if(isSurface(voxels, x, y-1, z) == -1) { next[xx][yy-1][zz] = choose(next[xx][yy-1][zz], b); next[xx][yy-2][zz] = choose(next[xx][yy-2][zz], b); }
-                        else if(isSurface(voxels, x, y-1, z) > 0) { next[xx][yy-1][zz] = choose(b, voxels[x][y-1][z]); }
-                        if(isSurface(voxels, x, y, z-1) == -1) { next[xx][yy][zz-1] = choose(next[xx][yy][zz-1], b); next[xx][yy][zz-2] = choose(next[xx][yy][zz-2], b); }
-                        else if(isSurface(voxels, x, y, z-1) > 0) { next[xx][yy][zz-1] = choose(b, voxels[x][y][z-1]); }
-
-                        if(isSurface(voxels, x+1, y, z) == -1) { next[xx+1][yy][zz] = choose(next[xx+1][yy][zz], b); next[xx+2][yy][zz] = choose(next[xx+2][yy][zz], b); }
-                        else if(isSurface(voxels, x+1, y, z) > 0) { next[xx+1][yy][zz] = choose(b, voxels[x+1][y][z]); }
-                        if(isSurface(voxels, x, y+1, z) == -1) { next[xx][yy+1][zz] = choose(next[xx][yy+1][zz], b); next[xx][yy+2][zz] = choose(next[xx][yy+2][zz], b); }
-                        else if(isSurface(voxels, x, y+1, z) > 0) { next[xx][yy+1][zz] = choose(b, voxels[x][y+1][z]); }
-                        if(isSurface(voxels, x, y, z+1) == -1) { next[xx][yy][zz+1] = choose(next[xx][yy][zz+1], b); next[xx][yy][zz+2] = choose(next[xx][yy][zz+2], b); }
-                        else if(isSurface(voxels, x, y, z+1) > 0) { next[xx][yy][zz+1] = choose(b, voxels[x][y][z+1]); }
+                        b = voxels[x][y][z];
+                        if(xx >= lo && xx < hi) next[xx][yy][zz] = b;
+                        if(isSurface(voxels, x-1, y, z) == -1) { chooseInto(next, xx-1, yy, zz, b, lightness, lo, hi); chooseInto(next, xx-2, yy, zz, b, lightness, lo, hi); }
+                        else if(isSurface(voxels, x-1, y, z) > 0) { putChosen(next, xx-1, yy, zz, b, voxels[x-1][y][z], lightness, lo, hi); }
+                        if(isSurface(voxels, x, y-1, z) == -1) { chooseInto(next, xx, yy-1, zz, b, lightness, lo, hi); chooseInto(next, xx, yy-2, zz, b, lightness, lo, hi); }
+                        else if(isSurface(voxels, x, y-1, z) > 0) { putChosen(next, xx, yy-1, zz, b, voxels[x][y-1][z], lightness, lo, hi); }
+                        if(isSurface(voxels, x, y, z-1) == -1) { chooseInto(next, xx, yy, zz-1, b, lightness, lo, hi); chooseInto(next, xx, yy, zz-2, b, lightness, lo, hi); }
+                        else if(isSurface(voxels, x, y, z-1) > 0) { putChosen(next, xx, yy, zz-1, b, voxels[x][y][z-1], lightness, lo, hi); }
+
+                        if(isSurface(voxels, x+1, y, z) == -1) { chooseInto(next, xx+1, yy, zz, b, lightness, lo, hi); chooseInto(next, xx+2, yy, zz, b, lightness, lo, hi); }
+                        else if(isSurface(voxels, x+1, y, z) > 0) { putChosen(next, xx+1, yy, zz, b, voxels[x+1][y][z], lightness, lo, hi); }
+                        if(isSurface(voxels, x, y+1, z) == -1) { chooseInto(next, xx, yy+1, zz, b, lightness, lo, hi); chooseInto(next, xx, yy+2, zz, b, lightness, lo, hi); }
+                        else if(isSurface(voxels, x, y+1, z) > 0) { putChosen(next, xx, yy+1, zz, b, voxels[x][y+1][z], lightness, lo, hi); }
+                        if(isSurface(voxels, x, y, z+1) == -1) { chooseInto(next, xx, yy, zz+1, b, lightness, lo, hi); chooseInto(next, xx, yy, zz+2, b, lightness, lo, hi); }
+                        else if(isSurface(voxels, x, y, z+1) > 0) { putChosen(next, xx, yy, zz+1, b, voxels[x][y][z+1], lightness, lo, hi); }
 
 //                        // debugging with black interiors
 //                        byte interior = 1;
@@ -814,33 +1406,46 @@ public class Tools3D {
 
                         // diagonals
                         if(isSurface(voxels, x-1, y, z) == -1) {
-                            if(isSurface(voxels, x-1, y-1, z) > 0) { next[xx-1][yy-1][zz] = choose(voxels[x-1][y-1][z], b); }
-                            if(isSurface(voxels, x-1, y+1, z) > 0) { next[xx-1][yy+1][zz] = choose(voxels[x-1][y+1][z], b); }
-                            if(isSurface(voxels, x-1, y, z-1) > 0) { next[xx-1][yy][zz-1] = choose(voxels[x-1][y][z-1], b); }
-                            if(isSurface(voxels, x-1, y, z+1) > 0) { next[xx-1][yy][zz+1] = choose(voxels[x-1][y][z+1], b); }
+                            if(isSurface(voxels, x-1, y-1, z) > 0) { putChosen(next, xx-1, yy-1, zz, voxels[x-1][y-1][z], b, lightness, lo, hi); }
+                            if(isSurface(voxels, x-1, y+1, z) > 0) { putChosen(next, xx-1, yy+1, zz, voxels[x-1][y+1][z], b, lightness, lo, hi); }
+                            if(isSurface(voxels, x-1, y, z-1) > 0) { putChosen(next, xx-1, yy, zz-1, voxels[x-1][y][z-1], b, lightness, lo, hi); }
+                            if(isSurface(voxels, x-1, y, z+1) > 0) { putChosen(next, xx-1, yy, zz+1, voxels[x-1][y][z+1], b, lightness, lo, hi); }
                         }
 
                         if(isSurface(voxels, x+1, y, z) == -1) {
-                            if(isSurface(voxels, x+1, y-1, z) > 0) { next[xx+1][yy-1][zz] = choose(voxels[x+1][y-1][z], b); }
-                            if(isSurface(voxels, x+1, y+1, z) > 0) { next[xx+1][yy+1][zz] = choose(voxels[x+1][y+1][z], b); }
-                            if(isSurface(voxels, x+1, y, z-1) > 0) { next[xx+1][yy][zz-1] = choose(voxels[x+1][y][z-1], b); }
-                            if(isSurface(voxels, x+1, y, z+1) > 0) { next[xx+1][yy][zz+1] = choose(voxels[x+1][y][z+1], b); }
+                            if(isSurface(voxels, x+1, y-1, z) > 0) { putChosen(next, xx+1, yy-1, zz, voxels[x+1][y-1][z], b, lightness, lo, hi); }
+                            if(isSurface(voxels, x+1, y+1, z) > 0) { putChosen(next, xx+1, yy+1, zz, voxels[x+1][y+1][z], b, lightness, lo, hi); }
+                            if(isSurface(voxels, x+1, y, z-1) > 0) { putChosen(next, xx+1, yy, zz-1, voxels[x+1][y][z-1], b, lightness, lo, hi); }
+                            if(isSurface(voxels, x+1, y, z+1) > 0) { putChosen(next, xx+1, yy, zz+1, voxels[x+1][y][z+1], b, lightness, lo, hi); }
                         }
 
                         if(isSurface(voxels, x, y-1, z) == -1) {
-                            if(isSurface(voxels, x, y-1, z-1) > 0) { next[xx][yy-1][zz-1] = choose(voxels[x][y-1][z-1], b); }
-                            if(isSurface(voxels, x, y-1, z+1) > 0) { next[xx][yy-1][zz+1] = choose(voxels[x][y-1][z+1], b); }
+                            if(isSurface(voxels, x, y-1, z-1) > 0) { putChosen(next, xx, yy-1, zz-1, voxels[x][y-1][z-1], b, lightness, lo, hi); }
+                            if(isSurface(voxels, x, y-1, z+1) > 0) { putChosen(next, xx, yy-1, zz+1, voxels[x][y-1][z+1], b, lightness, lo, hi); }
                         }
 
                         if(isSurface(voxels, x, y+1, z) == -1) {
-                            if(isSurface(voxels, x, y+1, z-1) > 0) { next[xx][yy+1][zz-1] = choose(voxels[x][y+1][z-1], b); }
-                            if(isSurface(voxels, x, y+1, z+1) > 0) { next[xx][yy+1][zz+1] = choose(voxels[x][y+1][z+1], b); }
+                            if(isSurface(voxels, x, y+1, z-1) > 0) { putChosen(next, xx, yy+1, zz-1, voxels[x][y+1][z-1], b, lightness, lo, hi); }
+                            if(isSurface(voxels, x, y+1, z+1) > 0) { putChosen(next, xx, yy+1, zz+1, voxels[x][y+1][z+1], b, lightness, lo, hi); }
                         }
                     }
                 }
             }
         }
-        return next;
+    }
+
+    /**
+     * Sets next[x][y][z] to whichever of itself and b is darker, if x is from lo (inclusive) to hi (exclusive).
+     */
+    private static void chooseInto(byte[][][] next, int x, int y, int z, byte b, float[] lightness, int lo, int hi) {
+        if(x >= lo && x < hi) next[x][y][z] = choose(next[x][y][z], b, lightness);
+    }
+
+    /**
+     * Sets next[x][y][z] to whichever of a and b is darker, if x is from lo (inclusive) to hi (exclusive).
+     */
+    private static void putChosen(byte[][][] next, int x, int y, int z, int a, int b, float[] lightness, int lo, int hi) {
+        if(x >= lo && x < hi) next[x][y][z] = choose(a, b, lightness);
     }
 
     /**
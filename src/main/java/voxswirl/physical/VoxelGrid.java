@@ -0,0 +1,34 @@
+package voxswirl.physical;
+
+/**
+ * A read-only 3D grid of palette indices, where 0 means an empty cell. This lets renderers and {@link Tools3D} work
+ * the same way on a full {@code byte[][][]} cube ({@link DenseVoxels}) and on a list of only the occupied cells
+ * ({@link SparseVoxels}), where memory use and iteration time depend on how many voxels are present rather than on
+ * the size of the bounding cube.
+ */
+public interface VoxelGrid {
+    int sizeX();
+    int sizeY();
+    int sizeZ();
+
+    /**
+     * Gets the palette index at the given position, or 0 if it is empty or out of bounds.
+     */
+    byte get(int x, int y, int z);
+
+    /**
+     * @return how many cells are not 0
+     */
+    int count();
+
+    /**
+     * Calls {@code visitor} once for each cell that is not 0, with z in the outermost loop, then x, then y, which is
+     * the order every renderer draws in.
+     * @param visitor will be called with each occupied position and its palette index
+     */
+    void forEach(Visitor visitor);
+
+    interface Visitor {
+        void visit(int x, int y, int z, byte color);
+    }
+}
@@ -6,8 +6,12 @@ import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.TimeUtils;
 import com.github.tommyettinger.anim8.PaletteReducer;
 import com.github.tommyettinger.colorful.oklab.ColorTools;
+import voxswirl.physical.DenseVoxels;
+import voxswirl.physical.MaterialTable;
+import voxswirl.physical.SparseVoxels;
 import voxswirl.physical.Tools3D;
 import voxswirl.physical.VoxMaterial;
+import voxswirl.physical.VoxelGrid;
 
 import static com.github.tommyettinger.colorful.TrigTools.cos_;
 import static com.github.tommyettinger.colorful.TrigTools.sin_;
@@ -19,16 +23,26 @@ import static voxswirl.meta.ArrayTools.fill;
  */
 public class AngledRenderer {
     public Pixmap pixmap;
-    public int[][] depths, voxels, render, outlines;
-    public VoxMaterial[][] materials;
-    public float[][] shadeX, shadeZ, colorL, colorA, colorB;
+    /**
+     * Per-pixel depths, voxels, colors, outlines, and materials, cleared after each blit.
+     */
+    public ScreenBuffer buffer;
+    public float[][] shadeX, shadeZ;
+    /**
+     * The voxel positions shaded since shadeX and shadeZ were last cleared.
+     */
+    protected final ShadeBounds shadeBounds = new ShadeBounds();
     public PaletteReducer reducer = new PaletteReducer(Coloring.HALTONIC255);
-    private int[] palette;
+    private int[] palette, paletteOutlines;
     public float[] paletteL, paletteA, paletteB;
     public boolean dither = false, outline = true;
     public int size;
     public float neutral = 1f;
     public IntMap<VoxMaterial> materialMap;
+    /**
+     * The traits of {@link #materialMap}, which splat and blit read instead of the map; refilled by drawSplats.
+     */
+    public final MaterialTable materialTable = new MaterialTable();
     public long seed;
     public byte[][][] remade;
 
@@ -40,16 +54,9 @@ public class AngledRenderer {
         final int w = size * 4 + 4, h = size * 5 + 4;
         pixmap = new Pixmap(w, h, Pixmap.Format.RGBA8888);
 //        pixmap = new Pixmap(w>>>1, h>>>1, Pixmap.Format.RGBA8888);
-        render =   new int[w][h];
-        outlines = new int[w][h];
-        depths =   new int[w][h];
-        materials = new VoxMaterial[w][h];
-        voxels = fill(-1, w, h);
+        buffer = new ScreenBuffer(w, h);
         shadeX = fill(-1f, size * 4, size * 4);
         shadeZ = fill(-1f, size * 4, size * 4);
-        colorL = fill(-1f, w, h);
-        colorA = fill(-1f, w, h);
-        colorB = fill(-1f, w, h);
         remade = new byte[size << 2][size << 2][size << 2];
     }
     
@@ -87,22 +94,17 @@ public class AngledRenderer {
         if(paletteL == null) paletteL = new float[256];
         if(paletteA == null) paletteA = new float[256];
         if(paletteB == null) paletteB = new float[256];
-        for (int i = 0; i < color.length; i++) {
-            if ((color[i] & 0x80) == 0) {
-                paletteL[i] = -1f;
-                paletteA[i] = -1f;
-                paletteB[i] = -1f;
-            } else {
-                float lab = ColorTools.fromRGBA8888(color[i]);
-                paletteL[i] = ColorTools.channelL(lab);
-                paletteA[i] = ColorTools.channelA(lab);
-                paletteB[i] = ColorTools.channelB(lab);
-            }
-        }
+        final PreparedPalette prepared = PreparedPalette.of(color);
+        prepared.copyTo(paletteL, paletteA, paletteB, Math.min(color.length, 256));
+        paletteOutlines = prepared.outlines;
         return this;
     }
     
     public void splat(float xPos, float yPos, float zPos, int vx, int vy, int vz, byte voxel) {
+        final int w = buffer.width, h = buffer.height;
+        final int[] depths = buffer.depths, voxels = buffer.voxels, render = buffer.render, outlines = buffer.outlines;
+        final float[] colorL = buffer.colorL, colorA = buffer.colorA, colorB = buffer.colorB;
+        final byte[] indices = buffer.indices;
         if(xPos <= -1f || yPos <= -1f || zPos <= -1f
                 || xPos >= size * 2 || yPos >= size * 2 || zPos >= size * 2)
             return;
@@ -111,27 +113,28 @@ public class AngledRenderer {
                 yy = (int)(0.5f + Math.max(0, (zPos * 3 + size * 3 - xPos - yPos) + 1)),
                 depth = (int)(0.5f + (xPos + yPos) * 2 + zPos * 3);
         boolean drawn = false;
-        final VoxMaterial m = materialMap.get(voxel & 255);
-        final float emit = m.getTrait(VoxMaterial.MaterialTrait._emit) * 1.25f;
-        final float alpha = m.getTrait(VoxMaterial.MaterialTrait._alpha);
+        final float[] traits = materialTable.traits;
+        final int mi = (voxel & 255) * MaterialTable.TRAITS;
+        final float emit = traits[mi + MaterialTable.EMIT] * 1.25f;
+        final float alpha = traits[mi + MaterialTable.ALPHA];
         final float hs = size * 0.5f;
         final float hx = hs + xPos, hy = hs + yPos, hz = hs + zPos;
-        for (int x = 0, ax = xx; x < 4 && ax < render.length; x++, ax++) {
-            for (int y = 0, ay = yy; y < 4 && ay < render[0].length; y++, ay++) {
-                if (depth >= depths[ax][ay] && (alpha == 0f || bn(ax, ay) >= alpha)) {
+        for (int x = 0, ax = xx; x < 4 && ax < w; x++, ax++) {
+            for (int y = 0, ay = yy; y < 4 && ay < h; y++, ay++) {
+                if (depth >= depths[ax * h + ay] && (alpha == 0f || bn(ax, ay) >= alpha)) {
                     drawn = true;
-                    colorL[ax][ay] = paletteL[voxel & 255];
-                    colorA[ax][ay] = paletteA[voxel & 255];
-                    colorB[ax][ay] = paletteB[voxel & 255];
-                    depths[ax][ay] = depth;
-                    materials[ax][ay] = m;
+                    colorL[ax * h + ay] = paletteL[voxel & 255];
+                    colorA[ax * h + ay] = paletteA[voxel & 255];
+                    colorB[ax * h + ay] = paletteB[voxel & 255];
+                    depths[ax * h + ay] = depth;
+                    indices[ax * h + ay] = voxel;
                     if(alpha == 0f)
-                        outlines[ax][ay] =
+                        outlines[ax * h + ay] = emit == 0f ? paletteOutlines[voxel & 255] :
                                 Coloring.darken(palette[voxel & 255], 0.375f - emit);
 //                                Coloring.adjust(palette[voxel & 255], 0.625f + emit, neutral);
                     else
-                        outlines[ax][ay] = palette[voxel & 255];
-                    voxels[ax][ay] = vx | vy << 10 | vz << 20;
+                        outlines[ax * h + ay] = palette[voxel & 255];
+                    voxels[ax * h + ay] = vx | vy << 10 | vz << 20;
                     for (int xp = (int)hx; xp < hx + 0.5f; xp++) {
                         for (int yp = (int) hy; yp < hy + 0.5f; yp++) {
                             for (int zp = (int) hz; zp < hz + 0.5f; zp++) {
@@ -142,26 +145,26 @@ public class AngledRenderer {
                 }
             }
         }
+        if(drawn)
+            buffer.touch(xx, yy, xx + 3, yy + 3);
         if(xPos < -hs || yPos < -hs || zPos < -hs || xPos + hs > shadeZ.length || yPos + hs > shadeZ[0].length || zPos + hs > shadeX[0].length)
             System.out.println(xPos + ", " + yPos + ", " + zPos + " is out of bounds");
         else if(drawn) {
             shadeZ[(int) (hs + xPos)][(int) (hs + yPos)] = Math.max(shadeZ[(int) (hs + xPos)][(int) (hs + yPos)], (hs + zPos));
             shadeX[(int) (hs + yPos)][(int) (hs + zPos)] = Math.max(shadeX[(int) (hs + yPos)][(int) (hs + zPos)], (hs + xPos));
+            shadeBounds.touch((int) (hs + xPos), (int) (hs + yPos), (int) (hs + zPos));
         }
     }
     
+    /**
+     * Erases what the last blit drew and anything splatted since, touching only the pixels and shade cells that could
+     * have changed.
+     * @return this, for chaining
+     */
     public AngledRenderer clear() {
-        pixmap.setColor(0);
-        pixmap.fill();
-        fill(depths, 0);
-        fill(render, 0);
-        fill(outlines, (byte) 0);
-        fill(voxels, -1);
-        fill(shadeX, -1f);
-        fill(shadeZ, -1f);
-        fill(colorL, -1f);
-        fill(colorA, -1f);
-        fill(colorB, -1f);
+        buffer.erase(pixmap);
+        buffer.clear();
+        shadeBounds.clear(shadeX, shadeZ);
         return this;
     }
 
@@ -188,9 +191,12 @@ public class AngledRenderer {
      */
     public Pixmap blit(float yaw, float pitch, float roll) {
         final int threshold = 12;
-        pixmap.setColor(0);
-        pixmap.fill();
-        int xSize = render.length - 1, ySize = render[0].length - 1, depth;
+        buffer.erase(pixmap);
+        final int w = buffer.width, h = buffer.height;
+        final int[] depths = buffer.depths, voxels = buffer.voxels, render = buffer.render, outlines = buffer.outlines;
+        final float[] colorL = buffer.colorL, colorA = buffer.colorA, colorB = buffer.colorB;
+        final byte[] indices = buffer.indices;
+        int xSize = w - 1, ySize = h - 1, depth;
 //        for (int x = 0; x <= xSize; x++) {
 //            System.arraycopy(working[x], 0, render[x], 0, ySize);
 //        }
@@ -202,10 +208,12 @@ public class AngledRenderer {
         final float x_x = cYaw * cPitch, y_x = cYaw * sPitch * sRoll - sYaw * cRoll, z_x = cYaw * sPitch * cRoll + sYaw * sRoll;
         final float x_y = sYaw * cPitch, y_y = sYaw * sPitch * sRoll + cYaw * cRoll, z_y = sYaw * sPitch * cRoll - cYaw * sRoll;
         final float x_z = -sPitch, y_z = cPitch * sRoll, z_z = cPitch * cRoll;
-        VoxMaterial m;
-        for (int sx = 0; sx <= xSize; sx++) {
-            for (int sy = 0; sy <= ySize; sy++) {
-                if((v = voxels[sx][sy]) != -1) {
+        final float[] traits = materialTable.traits;
+        int mi;
+        final int startX = buffer.startX, startY = buffer.startY, endX = buffer.endX, endY = buffer.endY;
+        for (int sx = startX; sx <= endX; sx++) {
+            for (int sy = startY; sy <= endY; sy++) {
+                if((v = voxels[sx * h + sy]) != -1) {
                     vx = v & 0x3FF;
                     vy = v >>> 10 & 0x3FF;
                     vz = v >>> 20 & 0x3FF;
@@ -218,9 +226,9 @@ public class AngledRenderer {
                     fy = (int)(ty);
                     tz = ox * x_z + oy * y_z + oz * z_z + hs + hs;
                     fz = (int)(tz);
-                    m = materials[sx][sy];
-                    float rough = m.getTrait(VoxMaterial.MaterialTrait._rough);
-                    float emit = m.getTrait(VoxMaterial.MaterialTrait._emit);
+                    mi = (indices[sx * h + sy] & 255) * MaterialTable.TRAITS;
+                    float rough = traits[mi + MaterialTable.ROUGH];
+                    float emit = traits[mi + MaterialTable.EMIT];
                     final float limit = 2;
 
                     float top = 0f, side = 0f, refract = 0f;
@@ -269,7 +277,7 @@ public class AngledRenderer {
                     top = (depthB - depthC) * 0.375f + (depthA - depthD) * 0.1875f + 0.375f;
 
                     if(depthD < -1 && depthC < 0 && depthB < 1 && depthA < 1)
-                        refract = m.getTrait(VoxMaterial.MaterialTrait._ior) * 0.5f;
+                        refract = traits[mi + MaterialTable.IOR] * 0.5f;
 
                     if(fy > 1) {
                         for (int probe = 3; probe >= -3; probe--) {
@@ -317,12 +325,12 @@ public class AngledRenderer {
                     if(side > 0f){
                         float spread = MathUtils.lerp(0.001f, 0.00025f, rough) * side;
                         if(bn(sx, sy) > 0.75f)
-                            colorL[sx][sy] += refract;
+                            colorL[sx * h + sy] += refract;
                         int dist;
                         for (int i = -3, si = sx + i; i <= 3; i++, si++) {
                             for (int j = -3, sj = sy + j; j <= 3; j++, sj++) {
                                 if((dist = Math.abs(i) + Math.abs(j)) > 3 || si < 0 || sj < 0 || si > xSize || sj > ySize) continue;
-                                colorL[si][sj] += spread * (4 - dist);
+                                colorL[si * h + sj] += spread * (4 - dist);
                             }
                         }
                     }
@@ -331,7 +339,7 @@ public class AngledRenderer {
                         for (int i = -5, si = sx + i; i <= 5; i++, si++) {
                             for (int j = -5, sj = sy + j; j <= 5; j++, sj++) {
                                 if(Math.abs(i) + Math.abs(j) > 5 || si < 0 || sj < 0 || si > xSize || sj > ySize) continue;
-                                colorL[si][sj] += spread;
+                                colorL[si * h + sj] += spread;
                             }
                         }
                     }
@@ -339,13 +347,13 @@ public class AngledRenderer {
             }
         }
 
-        for (int x = 0; x <= xSize; x++) {
-            for (int y = 0; y <= ySize; y++) {
-                if (colorA[x][y] >= 0f) {
-                    pixmap.drawPixel(x, y, render[x][y] = ColorTools.toRGBA8888(ColorTools.limitToGamut(
-                            Math.min(Math.max(colorL[x][y], 0f), 1f),
-                            (colorA[x][y] - 0.5f) * neutral + 0.5f,
-                            (colorB[x][y] - 0.5f) * neutral + 0.5f, 1f)));
+        for (int x = startX; x <= endX; x++) {
+            for (int y = startY; y <= endY; y++) {
+                if (colorA[x * h + y] >= 0f) {
+                    pixmap.drawPixel(x, y, render[x * h + y] = ColorTools.toRGBA8888(ColorTools.limitToGamut(
+                            Math.min(Math.max(colorL[x * h + y], 0f), 1f),
+                            (colorA[x * h + y] - 0.5f) * neutral + 0.5f,
+                            (colorB[x * h + y] - 0.5f) * neutral + 0.5f, 1f)));
                 }
             }
         }
@@ -361,24 +369,24 @@ public class AngledRenderer {
 //        }
         if (outline) {
             int o;
-            for (int x = 2; x < xSize - 1; x++) {
+            for (int x = Math.max(2, startX), xEnd = Math.min(xSize - 2, endX); x <= xEnd; x++) {
                 final int hx = x;
 //                final int hx = x >>> 1;
-                for (int y = 2; y < ySize - 1; y++) {
+                for (int y = Math.max(2, startY), yEnd = Math.min(ySize - 2, endY); y <= yEnd; y++) {
                     final int hy = y;
 //                    int hy = y >>> 1;
-                    if ((o = outlines[x][y]) != 0) {
-                        depth = depths[x][y];
-                        if (outlines[x - 1][y] == 0 || depths[x - 1][y] < depth - threshold) {
+                    if ((o = outlines[x * h + y]) != 0) {
+                        depth = depths[x * h + y];
+                        if (outlines[(x - 1) * h + y] == 0 || depths[(x - 1) * h + y] < depth - threshold) {
                             pixmap.drawPixel(hx - 1, hy    , o);
                         }
-                        if (outlines[x + 1][y] == 0 || depths[x + 1][y] < depth - threshold) {
+                        if (outlines[(x + 1) * h + y] == 0 || depths[(x + 1) * h + y] < depth - threshold) {
                             pixmap.drawPixel(hx + 1, hy    , o);
                         }
-                        if (outlines[x][y - 1] == 0 || depths[x][y - 1] < depth - threshold) {
+                        if (outlines[x * h + y - 1] == 0 || depths[x * h + y - 1] < depth - threshold) {
                             pixmap.drawPixel(hx    , hy - 1, o);
                         }
-                        if (outlines[x][y + 1] == 0 || depths[x][y + 1] < depth - threshold) {
+                        if (outlines[x * h + y + 1] == 0 || depths[x * h + y + 1] < depth - threshold) {
                             pixmap.drawPixel(hx    , hy + 1, o);
                         }
                     }
@@ -390,15 +398,9 @@ public class AngledRenderer {
             reducer.reduceScatter(pixmap);
         }
 
-        fill(render, 0);
-        fill(depths, 0);
-        fill(outlines, 0);
-        fill(voxels, -1);
-        fill(shadeX, -1);
-        fill(shadeZ, -1);
-        fill(colorL, -1f);
-        fill(colorA, -1f);
-        fill(colorB, -1f);
+        buffer.markDrawn(pixmap, 0);
+        buffer.clear();
+        shadeBounds.clear(shadeX, shadeZ);
         return pixmap;
     }
 
@@ -410,38 +412,33 @@ public class AngledRenderer {
     // To move one z- in voxels is y - 3 in pixels.
 
     public Pixmap drawSplats(byte[][][] colors, float angleTurns, IntMap<VoxMaterial> materialMap) {
+        return drawSplats(new DenseVoxels(colors), angleTurns, materialMap);
+    }
+
+    /**
+     * Draws every voxel in {@code colors} rotated by {@code angleTurns} around the z-axis.
+     * @param colors any VoxelGrid, such as a {@link SparseVoxels}, as large as this renderer's size on each axis
+     * @param angleTurns yaw rotation in turns, so 0.25 is a quarter-turn
+     * @param materialMap the materials for palette indices, or an empty IntMap to use the default for all
+     * @return {@link #pixmap}, containing the finished render
+     */
+    public Pixmap drawSplats(VoxelGrid colors, float angleTurns, IntMap<VoxMaterial> materialMap) {
         this.materialMap = materialMap;
+        materialTable.set(materialMap);
         Tools3D.fill(remade, 0);
         seed += TimeUtils.millis() * 0x632BE59BD9B4E019L;
 //        seed = Tools3D.hash64(colors);
-        final int size = colors.length;
+        final int size = colors.sizeX();
         final float hs = (size) * 0.5f;
-//        System.out.printf("%dx%dx%d model:\n", size, size, size);
-//        float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
-//        float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
-        for (int z = 0; z < size; z++) {
-            for (int x = 0; x < size; x++) {
-                for (int y = 0; y < size; y++) {
-                    final byte v = colors[x][y][z];
-                    if(v != 0)
-                    {
-                        final float c = cos_(angleTurns), s = sin_(angleTurns);
-                        final float xPos = (x-hs) * c - (y-hs) * s + size;
-                        final float yPos = (x-hs) * s + (y-hs) * c + size;
-//                        minX = Math.min(minX, xPos);
-//                        maxX = Math.max(maxX, xPos);
-//                        minY = Math.min(minY, yPos);
-//                        maxY = Math.max(maxY, yPos);
-                        splat(xPos, yPos, z, x, y, z, v);
-                    }
-                }
+        final float c = cos_(angleTurns), s = sin_(angleTurns);
+        colors.forEach(new VoxelGrid.Visitor() {
+            @Override
+            public void visit(int x, int y, int z, byte v) {
+                final float xPos = (x-hs) * c - (y-hs) * s + size;
+                final float yPos = (x-hs) * s + (y-hs) * c + size;
+                splat(xPos, yPos, z, x, y, z, v);
             }
-        }
-//        final int size2 = size << 1;
-//        if(minX < 0 || minY < 0 || maxX >= size2 || maxY >= size2) {
-//            System.out.println("UH OH on angle " + angleTurns + " for size " + size + " model!");
-//            System.out.printf("min X: %f, max X: %f, min Y: %f, max Y: %f\n", minX, maxX, minY, maxY);
-//        }
+        });
         return blit(angleTurns);
     }
 
@@ -6,8 +6,12 @@ import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.TimeUtils;
 import com.github.tommyettinger.anim8.PaletteReducer;
 import com.github.tommyettinger.colorful.ipt_hq.ColorTools;
+import voxswirl.physical.DenseVoxels;
+import voxswirl.physical.MaterialTable;
+import voxswirl.physical.SparseVoxels;
 import voxswirl.physical.Tools3D;
 import voxswirl.physical.VoxMaterial;
+import voxswirl.physical.VoxelGrid;
 
 import static voxswirl.meta.ArrayTools.fill;
 import static com.github.tommyettinger.colorful.TrigTools.cos_;
@@ -19,7 +23,7 @@ import static com.github.tommyettinger.colorful.TrigTools.sin_;
 public class ExperimentalRenderer {
     public Pixmap pixmap;
     public int[][] depths, render, outlines;
-    public VoxMaterial[][] materials;
+    public byte[][] indices;
     public byte[][][] remade;
     public float[][][] lights;
     public float[][] colorI, colorP, colorT;
@@ -32,6 +36,10 @@ public class ExperimentalRenderer {
     public float neutral = 1f, bigUp = 1.1f, midUp = 1.04f, midDown = 0.9f,
             smallUp = 1.02f, smallDown = 0.94f, tinyUp = 1.01f, tinyDown = 0.98f;
     public IntMap<VoxMaterial> materialMap;
+    /**
+     * The traits of {@link #materialMap}, which blit reads instead of the map; refilled by drawSplats.
+     */
+    public final MaterialTable materialTable = new MaterialTable();
     public long seed;
 
     protected ExperimentalRenderer() {
@@ -48,7 +56,7 @@ public class ExperimentalRenderer {
         render =   new int[w][h];
         outlines = new int[w][h];
         depths =   new int[w][h];
-        materials = new VoxMaterial[w][h];
+        indices = new byte[w][h];
         colorI = fill(-1f, w, h);
         colorP = fill(-1f, w, h);
         colorT = fill(-1f, w, h);
@@ -181,7 +189,8 @@ public class ExperimentalRenderer {
                 rmxLength = remade.length, rmyLength = remade[0].length, rmzLength = remade[0][0].length,
                 startRegion = size, endRegion = rmxLength - (size);
         int xx, yy, depth, voxel, vx, vy, vz;
-        VoxMaterial m;
+        final float[] traits = materialTable.traits;
+        int mi;
 
         // top lighting
         int starting = size * 3;
@@ -196,8 +205,8 @@ public class ExperimentalRenderer {
                         vx = (int)(ox + 0.5f);
                         vy = (int)(oy + 0.5f);
                         if((voxel = remade[vx][vy][z] & 255) != 0){
-                            m = materialMap.get(voxel);
-                            float carry = strongMinor * m.getTrait(VoxMaterial.MaterialTrait._rough);
+                            mi = voxel * MaterialTable.TRAITS;
+                            float carry = strongMinor * traits[mi + MaterialTable.ROUGH];
                             lights[vx][vy][z] += strongMain;
                             for (int vxx = x - 1; vxx <= x + 1; vxx++) {
                                 for (int vyy = vy - 1; vyy <= vy + 1; vyy++) {
@@ -230,8 +239,8 @@ public class ExperimentalRenderer {
                         vz = (int)(oz + 0.5f);
                         vy = (int)(oy + 0.5f);
                         if((voxel = remade[x][vy][vz] & 255) != 0){
-                            m = materialMap.get(voxel);
-                            float carry = weakMinor * m.getTrait(VoxMaterial.MaterialTrait._rough);
+                            mi = voxel * MaterialTable.TRAITS;
+                            float carry = weakMinor * traits[mi + MaterialTable.ROUGH];
                             lights[x][vy][vz] += weakMain;
                             for (int vxx = x - 1; vxx <= x + 1; vxx++) {
                                 for (int vyy = vy - 1; vyy <= vy + 1; vyy++) {
@@ -263,10 +272,10 @@ public class ExperimentalRenderer {
                     voxel = remade[x][y][z] & 255;
                     if(voxel == 0) continue;
                     depth = (x + y) * 2 + z * 3;
-                    m = materialMap.get(voxel);
-                    final float emit = m.getTrait(VoxMaterial.MaterialTrait._emit) * 1.25f;
-                    final float alpha = m.getTrait(VoxMaterial.MaterialTrait._alpha);
-                    final float reflect = m.getTrait(VoxMaterial.MaterialTrait._ior) + 0.9375f;
+                    mi = voxel * MaterialTable.TRAITS;
+                    final float emit = traits[mi + MaterialTable.EMIT] * 1.25f;
+                    final float alpha = traits[mi + MaterialTable.ALPHA];
+                    final float reflect = traits[mi + MaterialTable.IOR] + 0.9375f;
 //                    final int ax = xx, ay = yy;
                     for (int lx = 0, ax = xx; lx < 2 && ax <= xSize; lx++, ax++) {
                         for (int ly = 0, ay = yy; ly < 2 && ay <= ySize; ly++, ay++) {
@@ -275,7 +284,7 @@ public class ExperimentalRenderer {
                                 colorP[ax][ay] = paletteP[voxel];
                                 colorT[ax][ay] = paletteT[voxel];
                                 depths[ax][ay] = depth;
-                                materials[ax][ay] = m;
+                                indices[ax][ay] = (byte) voxel;
                                 if(alpha == 0f)
                                     outlines[ax][ay] = ColorTools.toRGBA8888(ColorTools.ipt(
                                             Math.max(0f, Math.min(1f, paletteI[voxel] - 0.2f + emit)),
@@ -352,39 +361,39 @@ public class ExperimentalRenderer {
     // To move one z- in voxels is y - 3 in pixels.
 
     public Pixmap drawSplats(byte[][][] colors, float angleTurns, IntMap<VoxMaterial> materialMap) {
+        return drawSplats(new DenseVoxels(colors), angleTurns, materialMap);
+    }
+
+    /**
+     * Draws every voxel in {@code colors} rotated by {@code angleTurns} around the z-axis.
+     * @param colors any VoxelGrid, such as a {@link SparseVoxels}, as large as this renderer's size on each axis
+     * @param angleTurns yaw rotation in turns, so 0.25 is a quarter-turn
+     * @param materialMap the materials for palette indices, or an empty IntMap to use the default for all
+     * @return {@link #pixmap}, containing the finished render
+     */
+    public Pixmap drawSplats(VoxelGrid colors, float angleTurns, IntMap<VoxMaterial> materialMap) {
         this.materialMap = materialMap;
+        materialTable.set(materialMap);
         Tools3D.fill(remade, 0);
         seed += TimeUtils.millis() * 0x632BE59BD9B4E019L;
 //        seed = Tools3D.hash64(colors);
-        final int size = colors.length;
+        final int size = colors.sizeX();
         final float hs = size * 0.5f;
         final float c = cos_(angleTurns), s = sin_(angleTurns);
-//        float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
-//        float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
-        for (int z = 0; z < size; z++) {
-            for (int x = 0; x < size; x++) {
-                for (int y = 0; y < size; y++) {
-                    final byte v = colors[x][y][z];
-                    if(v != 0)
-                    {
-                        for (int m = 0; m < 2; m++) {
-                            for (int n = 0; n < 2; n++) {
-                                for (int o = 0; o < 2; o++) {
-                                    final float xPos = (x+m-hs) * c - (y+n-hs) * s + size;
-                                    final float yPos = (x+m-hs) * s + (y+n-hs) * c + size;
-                                    splat(xPos, yPos, z + o, v);
-                                }
-                            }
+        colors.forEach(new VoxelGrid.Visitor() {
+            @Override
+            public void visit(int x, int y, int z, byte v) {
+                for (int m = 0; m < 2; m++) {
+                    for (int n = 0; n < 2; n++) {
+                        for (int o = 0; o < 2; o++) {
+                            final float xPos = (x+m-hs) * c - (y+n-hs) * s + size;
+                            final float yPos = (x+m-hs) * s + (y+n-hs) * c + size;
+                            splat(xPos, yPos, z + o, v);
                         }
-//                        minX = Math.min(minX, xPos);
-//                        maxX = Math.max(maxX, xPos);
-//                        minY = Math.min(minY, yPos);
-//                        maxY = Math.max(maxY, yPos);
-//                        splat(xPos, yPos, z, v);
                     }
                 }
             }
-        }
+        });
         return blit();
     }
 
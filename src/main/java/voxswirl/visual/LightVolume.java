@@ -0,0 +1,66 @@
+package voxswirl.visual;
+
+import java.util.Arrays;
+
+/**
+ * How much light reaches each voxel a renderer has placed, stored only for the box that holds those voxels. Light can
+ * be added anywhere, but is only kept inside the box given to {@link #reset(int, int, int, int, int, int, float)}; since
+ * light is only ever read where there is a voxel, nothing that could be read is lost. The light at (x, y, z) is in
+ * {@link #light} at {@code ((x - minX) * sizeY + y - minY) * sizeZ + z - minZ}.
+ * <br>
+ * A rotated model fills much less than the cube of space it could turn through, so this is far smaller than one
+ * float per cell of that cube, and the array is only reallocated when a box is larger than any before it.
+ */
+public class LightVolume {
+    public int minX, minY, minZ, sizeX, sizeY, sizeZ;
+    public float[] light = new float[0];
+
+    /**
+     * Sets the box this stores light for, from the min corner to the max corner (both inclusive), and fills it with
+     * {@code initial}. If any max is less than its min, the box is empty and all light is discarded.
+     * @return this, for chaining
+     */
+    public LightVolume reset(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, float initial) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        sizeX = Math.max(maxX - minX + 1, 0);
+        sizeY = Math.max(maxY - minY + 1, 0);
+        sizeZ = Math.max(maxZ - minZ + 1, 0);
+        final int n = sizeX * sizeY * sizeZ;
+        if(light.length < n) light = new float[n];
+        Arrays.fill(light, 0, n, initial);
+        return this;
+    }
+
+    /**
+     * Adds amount to the light at (x, y, z), or does nothing if that is outside the box.
+     */
+    public void add(int x, int y, int z, float amount) {
+        x -= minX;
+        y -= minY;
+        z -= minZ;
+        if(x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ)
+            light[(x * sizeY + y) * sizeZ + z] += amount;
+    }
+
+    /**
+     * Adds all the light in other to this, cell by cell; other must have been reset to the same box as this.
+     * @return this, for chaining
+     */
+    public LightVolume addAll(LightVolume other) {
+        final int n = sizeX * sizeY * sizeZ;
+        final float[] o = other.light;
+        for (int i = 0; i < n; i++) {
+            light[i] += o[i];
+        }
+        return this;
+    }
+
+    /**
+     * Gets the light at (x, y, z), which must be inside the box.
+     */
+    public float get(int x, int y, int z) {
+        return light[((x - minX) * sizeY + y - minY) * sizeZ + z - minZ];
+    }
+}
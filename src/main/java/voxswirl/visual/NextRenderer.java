@@ -2,13 +2,25 @@ package voxswirl.visual;
 
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.TimeUtils;
 import com.github.tommyettinger.anim8.OtherMath;
 import com.github.tommyettinger.anim8.PaletteReducer;
 import com.github.tommyettinger.colorful.oklab.ColorTools;
+import voxswirl.physical.DenseVoxels;
+import voxswirl.physical.MaterialTable;
+import voxswirl.physical.SparseVoxels;
 import voxswirl.physical.Tools3D;
 import voxswirl.physical.VoxMaterial;
+import voxswirl.physical.VoxelGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static voxswirl.meta.ArrayTools.fill;
 import static com.github.tommyettinger.colorful.TrigTools.cos_;
@@ -20,9 +32,16 @@ import static com.github.tommyettinger.colorful.TrigTools.sin_;
 public class NextRenderer {
     public Pixmap pixmap;
     public int[][] depths, render, outlines;
-    public VoxMaterial[][] materials;
+    public byte[][] indices;
+    /**
+     * The rotated voxels, indexed by x, y, then z; the z-axis is only {@code size + 1} long, since rotation happens
+     * around z and only the x- and y-axes need room to turn.
+     */
     public byte[][][] remade;
-    public float[][][] lights;
+    /**
+     * The light reaching each voxel in {@link #remade}, only kept for the box around the voxels placed so far.
+     */
+    public final LightVolume lights = new LightVolume();
     public float[][] colorL, colorA, colorB;
     public PaletteReducer reducer = new PaletteReducer();
     private int[] palette;
@@ -30,9 +49,32 @@ public class NextRenderer {
     public boolean dither = false, outline = true;
     public int size;
     public int quality = 24;
+    /**
+     * If true, {@link #blit()} marches its lighting rays on the common {@link ForkJoinPool}, in
+     * {@link #lightChunks} chunks that each add up their own light before the chunks are added together. The result
+     * is the same every time for the same number of chunks, but because the additions are grouped differently, the
+     * light can differ from lighting on one thread in the last bits. This is false by default, since renderers are
+     * often run one per thread already.
+     */
+    public boolean parallelLighting = false;
+    /**
+     * How many chunks {@link #parallelLighting} splits the rays into, by default one for each thread of the common
+     * {@link ForkJoinPool}. Each chunk needs its own light for the box around the placed voxels, as large as
+     * {@link #lights}, so lowering this also lowers how much memory lighting in parallel uses.
+     */
+    public int lightChunks = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
     public float neutral = 1f;
     public IntMap<VoxMaterial> materialMap;
+    /**
+     * The traits of {@link #materialMap}, which blit reads instead of the map; refilled by drawSplats.
+     */
+    public final MaterialTable materialTable = new MaterialTable();
     public long seed;
+    /**
+     * The light each chunk adds when {@link #parallelLighting} is true; reused by every blit.
+     */
+    private LightVolume[] chunkLights;
+    private int minX, minY, minZ, maxX, maxY, maxZ;
     public final float[] BLUE_NOISE = new float[64 * 64];
 
     protected NextRenderer() {
@@ -49,13 +91,12 @@ public class NextRenderer {
         render =   new int[w][h];
         outlines = new int[w][h];
         depths =   new int[w][h];
-        materials = new VoxMaterial[w][h];
+        indices = new byte[w][h];
         colorL = fill(-1f, w, h);
         colorA = fill(-1f, w, h);
         colorB = fill(-1f, w, h);
-        remade = new byte[size * 3][size * 3][size * 3];
-        lights = new float[size * 3][size * 3][size * 3];
-        Tools3D.fill(lights, 0.75f);
+        remade = new byte[size * 3][size * 3][size + 1];
+        resetBounds();
         for (int x = 0; x < 64; x++) {
             for (int y = 0; y < 64; y++) {
                 BLUE_NOISE[(x & 63) | (y & 63) << 6] =
@@ -123,24 +164,21 @@ public class NextRenderer {
         if(paletteL == null) paletteL = new float[256];
         if(paletteA == null) paletteA = new float[256];
         if(paletteB == null) paletteB = new float[256];
-        for (int i = 0; i < color.length; i++) {
-            if ((color[i] & 0x80) == 0) {
-                paletteL[i] = -1f;
-                paletteA[i] = -1f;
-                paletteB[i] = -1f;
-            } else {
-                float ipt = ColorTools.fromRGBA8888(color[i]);
-                paletteL[i] = ColorTools.channelL(ipt);
-                paletteA[i] = ColorTools.channelA(ipt);
-                paletteB[i] = ColorTools.channelB(ipt);
-            }
-        }
+        final PreparedPalette prepared = PreparedPalette.of(color);
+        prepared.copyTo(paletteL, paletteA, paletteB, Math.min(color.length, 256));
         return this;
     }
     
     public void splat(float xPos, float yPos, float zPos, byte voxel) {
 //        remade[(int) (xPos * 0.5f + 0.5f)][(int) (yPos * 0.5f + 0.5f)][(int) (zPos * 0.5f + 0.5f)] = voxel;
-        remade[(int) (xPos + 0.5f)][(int) (yPos + 0.5f)][(int) (zPos + 0.5f)] = voxel;
+        final int x = (int) (xPos + 0.5f), y = (int) (yPos + 0.5f), z = (int) (zPos + 0.5f);
+        remade[x][y][z] = voxel;
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        minZ = Math.min(minZ, z);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+        maxZ = Math.max(maxZ, z);
 //        remade[(int) ((xPos + 0x1p23f) - 0x1p23f)][(int) ((yPos + 0x1p23f) - 0x1p23f)][(int) ((zPos + 0x1p23f) - 0x1p23f)] = voxel;
 
 //        for (int xp = (int) xPos; xp < xPos + 0.5f; xp++) {
@@ -162,10 +200,18 @@ public class NextRenderer {
         fill(colorA, -1f);
         fill(colorB, -1f);
         Tools3D.fill(remade, 0);
-        Tools3D.fill(lights, 0.75f);
+        resetBounds();
         return this;
     }
 
+    /**
+     * Makes the box around the voxels in {@link #remade} empty; call this whenever remade is emptied.
+     */
+    protected void resetBounds() {
+        minX = minY = minZ = Integer.MAX_VALUE;
+        maxX = maxY = maxZ = -1;
+    }
+
     /**
      * Compiles all of the individual voxels drawn with {@link #splat(float, float, float, byte)} into a
      * single Pixmap and returns it.
@@ -173,101 +219,29 @@ public class NextRenderer {
      */
     public Pixmap blit() {
         final int threshold = 15999;
-        final int lightPasses = quality;
-        final float strongMain = 0.04f * 12f / lightPasses,
-        strongMinor = 0.025f * 12f / lightPasses,
-                weakMain = 0.016f * 12f / lightPasses,
-                weakMinor = 0.01f * 12f / lightPasses;
         pixmap.setColor(0);
         pixmap.fill();
         final int xSize = render.length - 1, ySize = render[0].length - 1,
                 rmxLength = remade.length, rmyLength = remade[0].length, rmzLength = remade[0][0].length,
                 startRegion = size >> 2, endRegion = rmxLength - (size >> 2);
-        int xx, yy, depth, voxel, vx, vy, vz;
-        VoxMaterial m;
+        int xx, yy, depth, voxel;
+        final float[] traits = materialTable.traits;
+        int mi;
+        lights.reset(minX, minY, minZ, maxX, maxY, maxZ, 0.75f);
 
-        // top lighting
-        int starting = size * 3 >> 1;
-        for (int y = startRegion; y < endRegion; y++) {
-            for (int x = startRegion; x < endRegion; x++) {
-                for (int p = 0; p < lightPasses; p++) {
-                    float ox = x, oy = y, xAngle = biasedAngle(x, y, p), yAngle = biasedAngle(x + 23, y + 41, -p);
-                    for (int z = starting;
-                         z >= 0 && ox >= startRegion && oy >= startRegion && ox < endRegion && oy < endRegion;
-                         z--, ox += xAngle, oy += yAngle) {
-                        if(z >= size) continue;
-                        vx = (int)(ox + 0.5f);
-                        vy = (int)(oy + 0.5f);
-                        if((voxel = remade[vx][vy][z] & 255) != 0){
-                            m = materialMap.get(voxel);
-                            float carry = strongMinor * (m == null ? 0.1f : m.getTrait(VoxMaterial.MaterialTrait._rough));
-                            lights[vx][vy][z] += strongMain;
-                            for (int vxx = x - 1; vxx <= x + 1; vxx++) {
-                                for (int vyy = vy - 1; vyy <= vy + 1; vyy++) {
-                                    for (int vzz = Math.max(0, z - 1); vzz <= Math.min(starting, z + 1); vzz++) {
-                                        lights[vxx][vyy][vzz] += carry;
-                                    }
-                                }
-                            }
-                            z--;
-                            vx = (int)(ox + xAngle + 0.5f);
-                            vy = (int)(oy + yAngle + 0.5f);
-                            if(z >= 0 && vx >= startRegion && vy >= startRegion && vx < endRegion && vy < endRegion)
-                                lights[vx][vy][z] += strongMain;
-
-//                            lights[x+1][vy][z] += 0.02f;
-//                            lights[x-1][vy][z] += 0.02f;
-//                            lights[x][vy+1][z] += 0.02f;
-//                            lights[x][vy-1][z] += 0.02f;
-
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-        // side lighting
-        starting = endRegion;
-        for (int z = 0; z < size; z++) {
-            for (int y = startRegion; y < endRegion; y++) {
-                for (int p = 0; p < lightPasses; p++) {
-                    float oz = z, oy = y, zAngle= biasedAngle(y + 11, z + 47, -p), yAngle = biasedAngle(y + 19, z + 13, p);
-                    for (int x = starting;
-                         x >= 0 && oz >= 0 && oy >= startRegion && oz < size && oy < endRegion;
-                         x--, oz += zAngle, oy += yAngle) {
-                        vz = (int)(oz + 0.5f);
-                        vy = (int)(oy + 0.5f);
-                        if((voxel = remade[x][vy][vz] & 255) != 0){
-                            m = materialMap.get(voxel);
-                            float carry = weakMinor * (m == null ? 0.1f : m.getTrait(VoxMaterial.MaterialTrait._rough));
-                            lights[x][vy][vz] += weakMain;
-                            for (int vxx = x - 1; vxx <= x + 1; vxx++) {
-                                for (int vyy = vy - 1; vyy <= vy + 1; vyy++) {
-                                    for (int vzz = Math.max(0, vz - 1); vzz <= Math.min(size, vz + 1); vzz++) {
-                                        lights[vxx][vyy][vzz] += carry;
-                                    }
-                                }
-                            }
-                            x--;
-                            vz = (int)(oz + zAngle + 0.5f);
-                            vy = (int)(oy + yAngle + 0.5f);
-                            if(x >= 0 && vz >= 0 && vy >= startRegion && vz < size && vy < endRegion)
-                                lights[x][vy][vz] += weakMain;
-
-//                            if(vz + 1 < size) lights[x][vy][vz+1] += 0.00625f;
-//                            if(vz > 0) lights[x][vy][vz-1] += 0.00625f;
-//                            lights[x][vy+1][vz] += 0.00625f;
-//                            lights[x][vy-1][vz] += 0.00625f;
-                            break;
-                        }
-                    }
-                }
-            }
+        // top lighting, then side lighting
+        final int topStart = startRegion, topEnd = endRegion, sideStart = 0, sideEnd = size;
+        if(parallelLighting) {
+            lightInParallel(true, topStart, topEnd);
+            lightInParallel(false, sideStart, sideEnd);
+        } else {
+            topLight(topStart, topEnd, lights);
+            sideLight(sideStart, sideEnd, lights);
         }
 
-        for (int z = 0; z < remade[0][0].length; z++) {
-            for (int y = 0; y < remade[0].length; y++) {
-                for (int x = 0; x < remade.length; x++) {
+        for (int z = minZ; z <= maxZ; z++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
                     xx = ((size + y - x) * 2 + 1 >> 1);
                     if(xx < 0 || xx > xSize) continue;
                     yy = ((z * 3 + size * 3 - x - y) + 1 >> 1);
@@ -275,27 +249,27 @@ public class NextRenderer {
                     voxel = remade[x][y][z] & 255;
                     if(voxel == 0) continue;
                     depth = (x + y) * 2 + z * 3;
-                    m = materialMap.get(voxel);
-                    final float emit = (m == null ? 0f : m.getTrait(VoxMaterial.MaterialTrait._emit)) * 1.25f;
-                    final float alpha = (m == null ? 0f : m.getTrait(VoxMaterial.MaterialTrait._alpha));
-                    final float reflect = (m == null ? 0.3f : m.getTrait(VoxMaterial.MaterialTrait._ior)) + 0.9375f;
-                    final float shimmer = (m == null ? 0f : m.getTrait(VoxMaterial.MaterialTrait._metal)) * 20f;
+                    mi = voxel * MaterialTable.TRAITS;
+                    final float emit = traits[mi + MaterialTable.EMIT] * 1.25f;
+                    final float alpha = traits[mi + MaterialTable.ALPHA];
+                    final float reflect = traits[mi + MaterialTable.IOR] + 0.9375f;
+                    final float shimmer = traits[mi + MaterialTable.METAL] * 20f;
 
                     for (int lx = 0, ax = xx; lx < 6 && ax <= xSize; lx++, ax++) {
                         for (int ly = 0, ay = yy; ly < 6 && ay <= ySize; ly++, ay++) {
                             if((lx == 0 && (ly == 0 || ly == 5)) || (lx == 5 && (ly == 0 || ly == 5))) continue;
                             if (depth > depths[ax][ay] &&
                                     (alpha == 0f || bn(ax >>> 1, ay >>> 1) >= alpha)) {
-                                colorL[ax][ay] = (float) Math.pow(paletteL[voxel] * (float) Math.sqrt(lights[x][y][z]), reflect) + (shimmer * Math.max(0f, bn(ax + x - y + z, ay - x + y - z) - 0.5f));
+                                colorL[ax][ay] = (float) Math.pow(paletteL[voxel] * (float) Math.sqrt(lights.get(x, y, z)), reflect) + (shimmer * Math.max(0f, bn(ax + x - y + z, ay - x + y - z) - 0.5f));
                                 colorA[ax][ay] = paletteA[voxel];
                                 colorB[ax][ay] = paletteB[voxel];
-                                materials[ax][ay] = m;
+                                indices[ax][ay] = (byte) voxel;
                                 depths[ax][ay] = depth;// - ((lx ^ lx >>> 1) & 1);
                                 if (alpha == 0f)
                                     outlines[ax][ay] =
                                             ColorTools.toRGBA8888(
                                                     ColorTools.oklab(
-                                                            Math.max(0f, Math.min(1f, (float) Math.pow(paletteL[voxel] * (float) Math.sqrt(lights[x][y][z] * 0.4f), reflect - 0.25f) + emit)),
+                                                            Math.max(0f, Math.min(1f, (float) Math.pow(paletteL[voxel] * (float) Math.sqrt(lights.get(x, y, z) * 0.4f), reflect - 0.25f) + emit)),
                                                             Math.max(0f, Math.min(1f, (paletteA[voxel] - 0.5f) * (neutral + 0.0625f) + 0.5f)),
                                                             Math.max(0f, Math.min(1f, (paletteB[voxel] - 0.5f) * (neutral + 0.0625f) + 0.5f)),
                                                             1f)
@@ -361,10 +335,155 @@ public class NextRenderer {
         fill(colorL, -1f);
         fill(colorA, -1f);
         fill(colorB, -1f);
-        Tools3D.fill(lights, 0.75f);
         return pixmap;
     }
 
+    /**
+     * Marches the top-lighting rays that start in rows {@code yStart} (inclusive) to {@code yEnd} (exclusive), adding
+     * light where each one first hits a voxel in {@link #remade} to target, which is {@link #lights} or the light of
+     * one chunk.
+     */
+    private void topLight(final int yStart, final int yEnd, final LightVolume target) {
+        final int lightPasses = quality;
+        final float strongMain = 0.04f * 12f / lightPasses,
+                strongMinor = 0.025f * 12f / lightPasses;
+        final int rmxLength = remade.length, startRegion = size >> 2, endRegion = rmxLength - (size >> 2);
+        final float[] traits = materialTable.traits;
+        int voxel, vx, vy, mi;
+        final int starting = size * 3 >> 1;
+        for (int y = yStart; y < yEnd; y++) {
+            for (int x = startRegion; x < endRegion; x++) {
+                for (int p = 0; p < lightPasses; p++) {
+                    float ox = x, oy = y, xAngle = biasedAngle(x, y, p), yAngle = biasedAngle(x + 23, y + 41, -p);
+                    for (int z = starting;
+                         z >= 0 && ox >= startRegion && oy >= startRegion && ox < endRegion && oy < endRegion;
+                         z--, ox += xAngle, oy += yAngle) {
+                        if(z >= size) continue;
+                        vx = (int)(ox + 0.5f);
+                        vy = (int)(oy + 0.5f);
+                        if((voxel = remade[vx][vy][z] & 255) != 0){
+                            mi = voxel * MaterialTable.TRAITS;
+                            float carry = strongMinor * traits[mi + MaterialTable.ROUGH];
+                            target.add(vx, vy, z, strongMain);
+                            for (int vxx = x - 1; vxx <= x + 1; vxx++) {
+                                for (int vyy = vy - 1; vyy <= vy + 1; vyy++) {
+                                    for (int vzz = Math.max(0, z - 1); vzz <= Math.min(starting, z + 1); vzz++) {
+                                        target.add(vxx, vyy, vzz, carry);
+                                    }
+                                }
+                            }
+                            z--;
+                            vx = (int)(ox + xAngle + 0.5f);
+                            vy = (int)(oy + yAngle + 0.5f);
+                            if(z >= 0 && vx >= startRegion && vy >= startRegion && vx < endRegion && vy < endRegion)
+                                target.add(vx, vy, z, strongMain);
+
+//                            lights[x+1][vy][z] += 0.02f;
+//                            lights[x-1][vy][z] += 0.02f;
+//                            lights[x][vy+1][z] += 0.02f;
+//                            lights[x][vy-1][z] += 0.02f;
+
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Marches the side-lighting rays that start in layers {@code zStart} (inclusive) to {@code zEnd} (exclusive),
+     * adding light where each one first hits a voxel in {@link #remade} to target, which is {@link #lights} or the light
+     * of one chunk.
+     */
+    private void sideLight(final int zStart, final int zEnd, final LightVolume target) {
+        final int lightPasses = quality;
+        final float weakMain = 0.016f * 12f / lightPasses,
+                weakMinor = 0.01f * 12f / lightPasses;
+        final int rmxLength = remade.length, startRegion = size >> 2, endRegion = rmxLength - (size >> 2);
+        final float[] traits = materialTable.traits;
+        int voxel, vy, vz, mi;
+        final int starting = endRegion;
+        for (int z = zStart; z < zEnd; z++) {
+            for (int y = startRegion; y < endRegion; y++) {
+                for (int p = 0; p < lightPasses; p++) {
+                    float oz = z, oy = y, zAngle= biasedAngle(y + 11, z + 47, -p), yAngle = biasedAngle(y + 19, z + 13, p);
+                    for (int x = starting;
+                         x >= 0 && oz >= 0 && oy >= startRegion && oz < size && oy < endRegion;
+                         x--, oz += zAngle, oy += yAngle) {
+                        vz = (int)(oz + 0.5f);
+                        vy = (int)(oy + 0.5f);
+                        if((voxel = remade[x][vy][vz] & 255) != 0){
+                            mi = voxel * MaterialTable.TRAITS;
+                            float carry = weakMinor * traits[mi + MaterialTable.ROUGH];
+                            target.add(x, vy, vz, weakMain);
+                            for (int vxx = x - 1; vxx <= x + 1; vxx++) {
+                                for (int vyy = vy - 1; vyy <= vy + 1; vyy++) {
+                                    for (int vzz = Math.max(0, vz - 1); vzz <= Math.min(size, vz + 1); vzz++) {
+                                        target.add(vxx, vyy, vzz, carry);
+                                    }
+                                }
+                            }
+                            x--;
+                            vz = (int)(oz + zAngle + 0.5f);
+                            vy = (int)(oy + yAngle + 0.5f);
+                            if(x >= 0 && vz >= 0 && vy >= startRegion && vz < size && vy < endRegion)
+                                target.add(x, vy, vz, weakMain);
+
+//                            if(vz + 1 < size) lights[x][vy][vz+1] += 0.00625f;
+//                            if(vz > 0) lights[x][vy][vz-1] += 0.00625f;
+//                            lights[x][vy+1][vz] += 0.00625f;
+//                            lights[x][vy-1][vz] += 0.00625f;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the rows (for top lighting) or layers (for side lighting) from start to end into at most
+     * {@link #lightChunks} chunks, and marches each chunk's rays on the common {@link ForkJoinPool}, adding their
+     * light to that chunk's own {@link LightVolume} with the same box as {@link #lights}. Then each chunk's light is
+     * added to lights in chunk order, so the result doesn't depend on which chunks finish first.
+     */
+    private void lightInParallel(final boolean top, final int start, final int end) {
+        final int chunks = Math.min(end - start, Math.max(1, lightChunks));
+        if(chunks <= 0) return;
+        if(chunkLights == null || chunkLights.length < chunks) {
+            final int had = chunkLights == null ? 0 : chunkLights.length;
+            chunkLights = chunkLights == null ? new LightVolume[chunks] : Arrays.copyOf(chunkLights, chunks);
+            for (int i = had; i < chunks; i++) {
+                chunkLights[i] = new LightVolume();
+            }
+        }
+        final ArrayList<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int from = start + (end - start) * c / chunks, to = start + (end - start) * (c + 1) / chunks;
+            final LightVolume target = chunkLights[c];
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    target.reset(minX, minY, minZ, maxX, maxY, maxZ, 0f);
+                    if(top) topLight(from, to, target);
+                    else sideLight(from, to, target);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> f : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new GdxRuntimeException("Could not light voxels", e);
+        }
+        for (int c = 0; c < chunks; c++) {
+            lights.addAll(chunkLights[c]);
+        }
+    }
+
     // To move one x+ in voxels is x + 2, y - 1 in pixels.
     // To move one x- in voxels is x - 2, y + 1 in pixels.
     // To move one y+ in voxels is x - 2, y - 1 in pixels.
@@ -373,39 +492,34 @@ public class NextRenderer {
     // To move one z- in voxels is y - 3 in pixels.
 
     public Pixmap drawSplats(byte[][][] colors, float angleTurns, IntMap<VoxMaterial> materialMap) {
+        return drawSplats(new DenseVoxels(colors), angleTurns, materialMap);
+    }
+
+    /**
+     * Draws every voxel in {@code colors} rotated by {@code angleTurns} around the z-axis.
+     * @param colors any VoxelGrid, such as a {@link SparseVoxels}, as large as this renderer's size on each axis
+     * @param angleTurns yaw rotation in turns, so 0.25 is a quarter-turn
+     * @param materialMap the materials for palette indices, or an empty IntMap to use the default for all
+     * @return {@link #pixmap}, containing the finished render
+     */
+    public Pixmap drawSplats(VoxelGrid colors, float angleTurns, IntMap<VoxMaterial> materialMap) {
         this.materialMap = materialMap;
+        materialTable.set(materialMap);
         Tools3D.fill(remade, 0);
+        resetBounds();
         seed += TimeUtils.millis() * 0x632BE59BD9B4E019L;
 //        seed = Tools3D.hash64(colors);
-        final int size = colors.length;
+        final int size = colors.sizeX();
         final float hs = (size) * 0.5f;
         final float c = cos_(angleTurns), s = sin_(angleTurns);
-//        float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
-//        float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
-        for (int z = 0; z < size; z++) {
-            for (int x = 0; x < size; x++) {
-                for (int y = 0; y < size; y++) {
-                    final byte v = colors[x][y][z];
-                    if(v != 0)
-                    {
-//                        for (int m = 0; m < 2; m++) {
-//                            for (int n = 0; n < 2; n++) {
-//                                for (int o = 0; o < 2; o++) {
-                                    final float xPos = (x-hs) * c - (y-hs) * s + size;
-                                    final float yPos = (x-hs) * s + (y-hs) * c + size;
-                                    splat(xPos, yPos, z, v);
-//                                }
-//                            }
-//                        }
-//                        minX = Math.min(minX, xPos);
-//                        maxX = Math.max(maxX, xPos);
-//                        minY = Math.min(minY, yPos);
-//                        maxY = Math.max(maxY, yPos);
-//                        splat(xPos, yPos, z, v);
-                    }
-                }
+        colors.forEach(new VoxelGrid.Visitor() {
+            @Override
+            public void visit(int x, int y, int z, byte v) {
+                final float xPos = (x-hs) * c - (y-hs) * s + size;
+                final float yPos = (x-hs) * s + (y-hs) * c + size;
+                splat(xPos, yPos, z, v);
             }
-        }
+        });
         return blit();
     }
 
@@ -0,0 +1,73 @@
+package voxswirl.visual;
+
+import com.badlogic.gdx.utils.IntMap;
+import voxswirl.physical.MaterialTable;
+import voxswirl.physical.SparseVoxels;
+import voxswirl.physical.Tools3D;
+import voxswirl.physical.VoxMaterial;
+
+/**
+ * Everything about a model that stays the same while it turns, gathered once so that drawing each angle only has to
+ * rotate a list of voxels. This keeps the voxels in the order renderers draw them, along with the model's palette and its
+ * materials already looked up into a {@link MaterialTable}. Given a depth, it can also keep only the voxels near the
+ * outside (see {@link Tools3D#shell(byte[][][], int)}), which is much faster for solid models but is not guaranteed to
+ * draw exactly the same pixels, so it is only done when asked for.
+ * <br>
+ * Draw one with {@link SmudgeRenderer#drawSplats(PreparedModel, float)}, or many frames of one at once with
+ * {@link voxswirl.app.FrameScheduler#render(PreparedModel, SmudgeRenderer, int)}.
+ */
+public class PreparedModel {
+    /**
+     * The depth the constructors without one use: 0, which keeps every voxel, so renders match drawing the voxels
+     * directly. A depth of 3 has matched on the models in {@code vox/} with {@link SmudgeRenderer}, but renderers that
+     * light voxels from inside a model could see the voxels it drops.
+     */
+    public static final int DEFAULT_DEPTH = 0;
+
+    /**
+     * The size of the model on the x-axis, which is what renderers use as the size for rotation.
+     */
+    public final int size;
+    /**
+     * The voxels to draw, sorted in drawing order.
+     */
+    public final SparseVoxels voxels;
+    /**
+     * The RGBA8888 palette the model was made with; renderers should be given it with their {@code palette()} method.
+     */
+    public final int[] palette;
+    /**
+     * The traits of each palette index's material.
+     */
+    public final MaterialTable materials;
+
+    public PreparedModel(byte[][][] voxels, int[] palette, IntMap<VoxMaterial> materials) {
+        this(voxels, palette, new MaterialTable(materials), DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param voxels a 3D byte array indexed by x, y, then z, usually already scaled and soaked; will not be modified
+     * @param palette the RGBA8888 palette for voxels; will be referenced, not copied
+     * @param materials the traits of each palette index's material; will be referenced, not copied
+     * @param depth how many layers of voxels to keep, see {@link Tools3D#shell(byte[][][], int)}, or 0 to keep all
+     */
+    public PreparedModel(byte[][][] voxels, int[] palette, MaterialTable materials, int depth) {
+        this.size = voxels.length;
+        this.voxels = depth < 1 ? Tools3D.sparse(voxels) : Tools3D.shell(voxels, depth);
+        this.palette = palette;
+        this.materials = materials;
+    }
+
+    /**
+     * Uses voxels that were already culled, such as the fewer voxels from {@link Tools3D#surface(byte[][][])}, as-is.
+     * @param voxels the voxels to draw, sorted in drawing order as every SparseVoxels is; will be referenced, not copied
+     * @param palette the RGBA8888 palette for voxels; will be referenced, not copied
+     * @param materials the traits of each palette index's material; will be referenced, not copied
+     */
+    public PreparedModel(SparseVoxels voxels, int[] palette, MaterialTable materials) {
+        this.size = voxels.sizeX;
+        this.voxels = voxels;
+        this.palette = palette;
+        this.materials = materials;
+    }
+}
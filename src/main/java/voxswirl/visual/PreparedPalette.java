@@ -0,0 +1,152 @@
+package voxswirl.visual;
+
+import com.github.tommyettinger.colorful.oklab.ColorTools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What the renderers work out from a palette before using it, worked out once: the OkLab channels of each color and
+ * the outline color of each. Get one with {@link #of(int[])}, which keeps the most recently used palettes, so switching
+ * between a few palettes (such as those in {@link Coloring}) doesn't convert them every time.
+ * <br>
+ * A PreparedPalette is shared by every renderer and thread that asks for the same colors, so none of its arrays may be
+ * changed; renderers copy the channels into their own arrays with {@link #copyTo(float[], float[], float[], int)}. It
+ * always has 256 colors; a shorter palette is padded with transparent colors.
+ */
+final class PreparedPalette {
+    /**
+     * How many palettes {@link #of(int[])} keeps before dropping the one used longest ago.
+     */
+    static final int CACHE_SIZE = 64;
+
+    private static final LinkedHashMap<Integer, PreparedPalette> CACHE =
+            new LinkedHashMap<Integer, PreparedPalette>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, PreparedPalette> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    /**
+     * The 256 RGBA8888 colors.
+     */
+    final int[] rgba;
+    /**
+     * The OkLab L, A, and B channels of each color, as the renderers use them; colors with alpha below 128 have -1 in
+     * all three.
+     */
+    final float[] l, a, b;
+    /**
+     * The color renderers outline each color with when its material doesn't glow:
+     * {@code Coloring.darken(rgba[i], 0.375f)}.
+     */
+    final int[] outlines;
+    private final int hash;
+
+    private PreparedPalette(int[] palette, int hash) {
+        this.hash = hash;
+        rgba = new int[256];
+        System.arraycopy(palette, 0, rgba, 0, Math.min(palette.length, 256));
+        l = new float[256];
+        a = new float[256];
+        b = new float[256];
+        outlines = new int[256];
+        for (int i = 0; i < 256; i++) {
+            final int color = rgba[i];
+            if ((color & 0x80) == 0) {
+                l[i] = -1f;
+                a[i] = -1f;
+                b[i] = -1f;
+            } else {
+                final float lab = ColorTools.fromRGBA8888(color);
+                l[i] = ColorTools.channelL(lab);
+                a[i] = ColorTools.channelA(lab);
+                b[i] = ColorTools.channelB(lab);
+            }
+            outlines[i] = Coloring.darken(color, 0.375f);
+        }
+    }
+
+    /**
+     * Gets the PreparedPalette with the same colors as palette, making it only if no cached one matches. Looking one up
+     * compares the colors, so it is much faster than converting them, but is still worth doing once per palette
+     * change rather than once per voxel.
+     * @param palette up to 256 RGBA8888 colors; only read here, so changing it later doesn't change the result
+     * @return a shared, read-only PreparedPalette with those colors
+     */
+    static PreparedPalette of(int[] palette) {
+        final int hash = hash(palette);
+        synchronized (CACHE) {
+            final PreparedPalette cached = CACHE.get(hash);
+            if (cached != null && cached.matches(palette))
+                return cached;
+        }
+        // made outside the lock so other palettes can be looked up meanwhile; if two threads make the same one, both
+        // are correct, and whichever is stored last is shared from then on
+        final PreparedPalette prepared = new PreparedPalette(palette, hash);
+        synchronized (CACHE) {
+            CACHE.put(hash, prepared);
+        }
+        return prepared;
+    }
+
+    /**
+     * Drops every cached palette; PreparedPalettes already handed out stay usable.
+     */
+    static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * Copies the OkLab channels of the first count colors into l, a, and b, leaving the rest of each array as it was.
+     * @param count how many colors to copy, at most 256 and at most the length of each array
+     */
+    void copyTo(float[] l, float[] a, float[] b, int count) {
+        System.arraycopy(this.l, 0, l, 0, count);
+        System.arraycopy(this.a, 0, a, 0, count);
+        System.arraycopy(this.b, 0, b, 0, count);
+    }
+
+    /**
+     * @return true if palette, padded with 0 to 256 colors, is the same as {@link #rgba}
+     */
+    boolean matches(int[] palette) {
+        final int n = Math.min(palette.length, 256);
+        for (int i = 0; i < n; i++) {
+            if (palette[i] != rgba[i]) return false;
+        }
+        for (int i = n; i < 256; i++) {
+            if (rgba[i] != 0) return false;
+        }
+        return true;
+    }
+
+    private static int hash(int[] palette) {
+        final int n = Math.min(palette.length, 256);
+        int h = 1;
+        for (int i = 0; i < n; i++) {
+            h = 31 * h + palette[i];
+        }
+        // padding the rest with 0 only multiplies, so the same colors give the same hash however they are padded
+        for (int i = n; i < 256; i++) {
+            h *= 31;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PreparedPalette)) return false;
+        final PreparedPalette other = (PreparedPalette) o;
+        return hash == other.hash && matches(other.rgba);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,101 @@
+package voxswirl.visual;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Keeps {@link SmudgeRenderer}s that are no longer in use so they can be handed out again, instead of allocating new
+ * per-pixel buffers and a new native {@link com.badlogic.gdx.graphics.Pixmap} for every model. Renderers are matched
+ * by {@link SmudgeRenderer#size}, which decides how large the per-pixel buffers are, and then by
+ * {@link SmudgeRenderer#shrink}, which decides how large the Pixmap is; if only the size matches, the renderer's buffers
+ * are reused and only its Pixmap is replaced.
+ * <br>
+ * At most {@link #max} renderers are kept; freeing one more disposes the one that has gone unused the longest. All
+ * methods are synchronized, so one pool can be shared by several threads. Call {@link #dispose()} when done to free the
+ * Pixmaps of every renderer still in the pool.
+ */
+public class RendererPool implements Disposable {
+    /**
+     * How many free renderers this keeps, of all sizes together.
+     */
+    public final int max;
+    /**
+     * Free renderers, from the one freed longest ago to the one freed most recently.
+     */
+    private final Array<SmudgeRenderer> free;
+
+    /**
+     * Keeps up to 16 free renderers.
+     */
+    public RendererPool() {
+        this(16);
+    }
+
+    /**
+     * @param max how many free renderers to keep, of all sizes together
+     */
+    public RendererPool(int max) {
+        this.max = Math.max(0, max);
+        free = new Array<>(true, this.max + 1);
+    }
+
+    /**
+     * Gets a cleared renderer with the given size and shrink. This reuses the most recently freed renderer with the same
+     * size and shrink if there is one, or else the most recently freed one with the same size (replacing its Pixmap),
+     * and only creates a new renderer if no free one has that size. A reused renderer keeps the palette and other
+     * settings it last had, so configure it (for instance with {@link SmudgeRenderer#set(SmudgeRenderer)}) first.
+     * @param size the size of models the renderer will draw, on the x-axis
+     * @param shrink how many times the renderer should halve its Pixmap's width and height
+     * @return a renderer with that size and shrink, not used by anything else until it is given to {@link #free}
+     */
+    public synchronized SmudgeRenderer obtain(int size, int shrink) {
+        int sameSize = -1;
+        for (int i = free.size - 1; i >= 0; i--) {
+            final SmudgeRenderer r = free.get(i);
+            if(r.size == size) {
+                if(r.shrink == shrink && !r.pixmap.isDisposed()) {
+                    free.removeIndex(i);
+                    return r.clear();
+                }
+                if(sameSize == -1) sameSize = i;
+            }
+        }
+        if(sameSize != -1)
+            return free.removeIndex(sameSize).shrink(shrink).clear();
+        return new SmudgeRenderer(size, shrink);
+    }
+
+    /**
+     * Returns a renderer to this pool so {@link #obtain(int, int)} can hand it out again. The renderer must not be used
+     * after this, and must not be freed twice. If this already holds {@link #max} renderers, the one freed longest ago
+     * has its Pixmap disposed and is dropped.
+     * @param renderer a renderer that was made by {@link #obtain(int, int)}, or any SmudgeRenderer; may be null
+     */
+    public synchronized void free(SmudgeRenderer renderer) {
+        if(renderer == null) return;
+        free.add(renderer);
+        while (free.size > max) {
+            final SmudgeRenderer old = free.removeIndex(0);
+            if(!old.pixmap.isDisposed()) old.pixmap.dispose();
+        }
+    }
+
+    /**
+     * @return how many free renderers this currently holds
+     */
+    public synchronized int size() {
+        return free.size;
+    }
+
+    /**
+     * Disposes the Pixmap of every free renderer and empties this pool; renderers that were obtained and not freed yet
+     * are not affected.
+     */
+    @Override
+    public synchronized void dispose() {
+        for (SmudgeRenderer r : free) {
+            if(!r.pixmap.isDisposed()) r.pixmap.dispose();
+        }
+        free.clear();
+    }
+}
@@ -0,0 +1,177 @@
+package voxswirl.visual;
+
+import com.badlogic.gdx.graphics.Pixmap;
+
+import java.util.Arrays;
+
+/**
+ * The per-pixel state a renderer builds up while splatting voxels, before it is blitted to a Pixmap. Each channel is a
+ * flat array of {@code width * height} items, with the pixel at (x, y) at {@link #index(int, int) x * height + y}, so
+ * moving one pixel in y moves one item and moving one pixel in x moves {@link #height} items. Keeping each channel in
+ * one array avoids following a row pointer on every access, and lets {@link #clear()} fill each channel at once.
+ * <br>
+ * Renderers call {@link #touch(int, int, int, int)} with the pixels each splat could change, so {@link #clear()} only
+ * has to reset the rectangle that was drawn to (plus {@link #SPREAD} pixels around it), instead of every pixel. A small
+ * model on a large canvas then costs about as much to clear as it does to draw. The same goes for the Pixmap each
+ * blit draws to: {@link #markDrawn(Pixmap, int)} remembers where the blit could have drawn, and
+ * {@link #erase(Pixmap)} makes only that rectangle transparent again.
+ */
+public class ScreenBuffer {
+    /**
+     * How far past the touched rectangle blitting may change {@link #colorL}; the widest glow renderers spread from an
+     * emissive voxel.
+     */
+    public static final int SPREAD = 12;
+    public final int width, height;
+    /**
+     * The touched rectangle, from (startX, startY) to (endX, endY), both inclusive; empty if endX is less than startX.
+     * Nothing outside it was drawn since the last clear, so blitting only needs to visit the pixels inside it.
+     */
+    public int startX, startY, endX, endY;
+    /**
+     * The rectangle of the Pixmap given to {@link #markDrawn(Pixmap, int)} that the last blit could have drawn to, both
+     * corners inclusive; empty if drawnEndX is less than drawnStartX. Unlike the touched rectangle, this is in the
+     * Pixmap's pixels, and is kept by {@link #clear()} until {@link #erase(Pixmap)} is called.
+     */
+    public int drawnStartX, drawnStartY, drawnEndX = -1, drawnEndY = -1;
+    /**
+     * Larger depths are closer to the viewer; 0 means nothing was drawn.
+     */
+    public final int[] depths;
+    /**
+     * The voxel drawn at each pixel, packed as {@code x | y << 10 | z << 20}, or -1 if nothing was drawn.
+     */
+    public final int[] voxels;
+    /**
+     * RGBA8888 colors, filled in by blitting.
+     */
+    public final int[] render;
+    /**
+     * RGBA8888 colors to draw around the edges of each pixel's voxel, or 0 if nothing was drawn.
+     */
+    public final int[] outlines;
+    /**
+     * Oklab channels for each pixel, or -1 if nothing was drawn.
+     */
+    public final float[] colorL, colorA, colorB;
+    /**
+     * The palette index of the voxel drawn at each pixel, used to look up its material in a
+     * {@link voxswirl.physical.MaterialTable}; only meaningful where {@link #voxels} is not -1.
+     */
+    public final byte[] indices;
+
+    public ScreenBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        final int n = width * height;
+        depths = new int[n];
+        voxels = new int[n];
+        render = new int[n];
+        outlines = new int[n];
+        colorL = new float[n];
+        colorA = new float[n];
+        colorB = new float[n];
+        indices = new byte[n];
+        clearAll();
+    }
+
+    public int index(int x, int y) {
+        return x * height + y;
+    }
+
+    /**
+     * Adds the rectangle from (startX, startY) to (endX, endY), both inclusive, to the touched rectangle. Parts outside
+     * this buffer are ignored.
+     */
+    public void touch(int startX, int startY, int endX, int endY) {
+        this.startX = Math.min(this.startX, Math.max(startX, 0));
+        this.startY = Math.min(this.startY, Math.max(startY, 0));
+        this.endX = Math.max(this.endX, Math.min(endX, width - 1));
+        this.endY = Math.max(this.endY, Math.min(endY, height - 1));
+    }
+
+    /**
+     * @return true if nothing has been touched since the last clear
+     */
+    public boolean isClean() {
+        return endX < startX || endY < startY;
+    }
+
+    /**
+     * Records that the touched rectangle was just blitted to pixmap, so {@link #erase(Pixmap)} can undo it. Call this
+     * before {@link #clear()} empties the touched rectangle.
+     * @param pixmap the Pixmap that was drawn to
+     * @param shrink how many times pixmap's width and height were halved from this buffer's; 0 if they are the same
+     */
+    public void markDrawn(Pixmap pixmap, int shrink) {
+        if(isClean()) return;
+        // outlines can be drawn one pixel past the drawn area
+        drawnStartX = Math.max((startX >>> shrink) - 1, 0);
+        drawnStartY = Math.max((startY >>> shrink) - 1, 0);
+        drawnEndX = Math.min((endX >>> shrink) + 1, pixmap.getWidth() - 1);
+        drawnEndY = Math.min((endY >>> shrink) + 1, pixmap.getHeight() - 1);
+    }
+
+    /**
+     * Makes the rectangle of pixmap recorded by {@link #markDrawn(Pixmap, int)} transparent again, then forgets it.
+     * Blending is turned off while filling, since filling with a transparent color would otherwise change nothing.
+     * @param pixmap the Pixmap last given to {@link #markDrawn(Pixmap, int)}
+     */
+    public void erase(Pixmap pixmap) {
+        if(drawnStartX <= drawnEndX && drawnStartY <= drawnEndY) {
+            final Pixmap.Blending blending = pixmap.getBlending();
+            pixmap.setBlending(Pixmap.Blending.None);
+            pixmap.setColor(0);
+            pixmap.fillRectangle(drawnStartX, drawnStartY, drawnEndX + 1 - drawnStartX, drawnEndY + 1 - drawnStartY);
+            pixmap.setBlending(blending);
+        }
+        drawnStartX = drawnStartY = 0;
+        drawnEndX = drawnEndY = -1;
+    }
+
+    /**
+     * Resets every channel to its empty value in the touched rectangle and {@link #SPREAD} pixels around it, except
+     * {@link #indices}, which is only read where a voxel was drawn, then makes the touched rectangle empty. Everything
+     * outside that area must not have been changed since the last clear.
+     * @return this, for chaining
+     */
+    public ScreenBuffer clear() {
+        if(!isClean()) {
+            final int sy = Math.max(startY - SPREAD, 0), ey = Math.min(endY + SPREAD + 1, height);
+            for (int x = Math.max(startX - SPREAD, 0), ex = Math.min(endX + SPREAD + 1, width); x < ex; x++) {
+                final int from = x * height + sy, to = x * height + ey;
+                Arrays.fill(depths, from, to, 0);
+                Arrays.fill(voxels, from, to, -1);
+                Arrays.fill(render, from, to, 0);
+                Arrays.fill(outlines, from, to, 0);
+                Arrays.fill(colorL, from, to, -1f);
+                Arrays.fill(colorA, from, to, -1f);
+                Arrays.fill(colorB, from, to, -1f);
+            }
+        }
+        startX = width;
+        startY = height;
+        endX = endY = -1;
+        return this;
+    }
+
+    /**
+     * Resets every channel to its empty value everywhere, except {@link #indices}, which is only read where a voxel was
+     * drawn, then makes the touched rectangle empty. This is only needed if something changed the channels without
+     * calling {@link #touch(int, int, int, int)}.
+     * @return this, for chaining
+     */
+    public ScreenBuffer clearAll() {
+        Arrays.fill(depths, 0);
+        Arrays.fill(voxels, -1);
+        Arrays.fill(render, 0);
+        Arrays.fill(outlines, 0);
+        Arrays.fill(colorL, -1f);
+        Arrays.fill(colorA, -1f);
+        Arrays.fill(colorB, -1f);
+        startX = width;
+        startY = height;
+        endX = endY = -1;
+        return this;
+    }
+}
@@ -0,0 +1,43 @@
+package voxswirl.visual;
+
+import static voxswirl.meta.ArrayTools.fill;
+
+/**
+ * The range of voxel positions a renderer has shaded since its shade maps were last cleared, so
+ * {@link #clear(float[][], float[][])} only has to reset the cells that could have changed. Positions are offset by
+ * half the renderer's size, as the shadeX and shadeZ maps are indexed.
+ */
+public class ShadeBounds {
+    /**
+     * The shaded range, from (startX, startY, startZ) to (endX, endY, endZ), all inclusive; empty if endX is less than
+     * startX.
+     */
+    public int startX = Integer.MAX_VALUE, startY = Integer.MAX_VALUE, startZ = Integer.MAX_VALUE,
+            endX = -1, endY = -1, endZ = -1;
+
+    /**
+     * Expands the shaded range to include the given position.
+     */
+    public void touch(int x, int y, int z) {
+        startX = Math.min(startX, x);
+        startY = Math.min(startY, y);
+        startZ = Math.min(startZ, z);
+        endX = Math.max(endX, x);
+        endY = Math.max(endY, y);
+        endZ = Math.max(endZ, z);
+    }
+
+    /**
+     * Resets the parts of shadeX and shadeZ in the shaded range to -1, then makes the range empty.
+     * @param shadeX indexed by y, then z
+     * @param shadeZ indexed by x, then y
+     */
+    public void clear(float[][] shadeX, float[][] shadeZ) {
+        if(startX <= endX) {
+            fill(shadeZ, startX, startY, endX + 1, endY + 1, -1f);
+            fill(shadeX, startY, startZ, endY + 1, endZ + 1, -1f);
+        }
+        startX = startY = startZ = Integer.MAX_VALUE;
+        endX = endY = endZ = -1;
+    }
+}
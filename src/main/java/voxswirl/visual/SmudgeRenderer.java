@@ -5,7 +5,11 @@ import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.IntMap;
 import com.github.tommyettinger.anim8.PaletteReducer;
 import com.github.tommyettinger.colorful.oklab.ColorTools;
+import voxswirl.physical.DenseVoxels;
+import voxswirl.physical.MaterialTable;
+import voxswirl.physical.SparseVoxels;
 import voxswirl.physical.VoxMaterial;
+import voxswirl.physical.VoxelGrid;
 
 import static voxswirl.meta.ArrayTools.fill;
 
@@ -14,9 +18,15 @@ import static voxswirl.meta.ArrayTools.fill;
  */
 public class SmudgeRenderer {
     public Pixmap pixmap;
-    public int[][] depths, voxels, render, outlines;
-    public VoxMaterial[][] materials;
-    public float[][] shadeX, shadeZ, colorL, colorA, colorB;
+    /**
+     * Per-pixel depths, voxels, colors, outlines, and materials, cleared after each blit.
+     */
+    public ScreenBuffer buffer;
+    public float[][] shadeX, shadeZ;
+    /**
+     * The voxel positions shaded since shadeX and shadeZ were last cleared.
+     */
+    protected final ShadeBounds shadeBounds = new ShadeBounds();
     public PaletteReducer reducer = new PaletteReducer();
     public int[] palette;
     public float[] paletteL, paletteA, paletteB;
@@ -25,6 +35,10 @@ public class SmudgeRenderer {
     public int shrink = 1;
     public float neutral = 1f;
     public IntMap<VoxMaterial> materialMap;
+    /**
+     * The traits of {@link #materialMap}, which splat and blit read instead of the map; refilled by drawSplats.
+     */
+    public final MaterialTable materialTable = new MaterialTable();
     public VoxMaterial defaultMaterial;
 //    public long seed;
 
@@ -32,21 +46,23 @@ public class SmudgeRenderer {
 
     }
     public SmudgeRenderer(final int size) {
+        this(size, 1);
+    }
+
+    /**
+     * @param size the size of models this will draw, on the x-axis
+     * @param shrink how many times to halve the width and height of {@link #pixmap}; 0 draws at full size
+     */
+    public SmudgeRenderer(final int size, final int shrink) {
         this.size = size;
+        this.shrink = shrink;
         defaultMaterial = new VoxMaterial();
         final int w = size * 4 + 4, h = size * 5 + 4;
 //        pixmap = new Pixmap(w, h, Pixmap.Format.RGBA8888);
         pixmap = new Pixmap(w>>>shrink, h>>>shrink, Pixmap.Format.RGBA8888);
-        render =   new int[w][h];
-        outlines = new int[w][h];
-        depths =   new int[w][h];
-        materials = new VoxMaterial[w][h];
-        voxels = fill(-1, w, h);
+        buffer = new ScreenBuffer(w, h);
         shadeX = fill(-1f, size * 4, size * 4);
         shadeZ = fill(-1f, size * 4, size * 4);
-        colorL = fill(-1f, w, h);
-        colorA = fill(-1f, w, h);
-        colorB = fill(-1f, w, h);
 //        remade = new byte[size << 1][size << 1][size << 1];
     }
     
@@ -79,6 +95,45 @@ public class SmudgeRenderer {
         return this;
     }
 
+    /**
+     * Copies the palette, saturation, outline, dither, and shrink settings from {@code other} into this renderer,
+     * resizing {@link #pixmap} if the shrink changed. The two renderers should have the same {@link #size}. This is
+     * mostly useful to give each thread its own renderer that draws exactly like a shared one.
+     * @param other another SmudgeRenderer with the same size; will not be modified
+     * @return this, for chaining
+     */
+    public SmudgeRenderer set(SmudgeRenderer other) {
+        if(other.palette != null) {
+            palette = other.palette;
+            if(paletteL == null) paletteL = new float[256];
+            if(paletteA == null) paletteA = new float[256];
+            if(paletteB == null) paletteB = new float[256];
+            System.arraycopy(other.paletteL, 0, paletteL, 0, 256);
+            System.arraycopy(other.paletteA, 0, paletteA, 0, 256);
+            System.arraycopy(other.paletteB, 0, paletteB, 0, 256);
+        }
+        neutral = other.neutral;
+        defaultMaterial = other.defaultMaterial;
+        outline = other.outline;
+        dither = other.dither;
+        return shrink(other.shrink);
+    }
+
+    /**
+     * Sets {@link #shrink}, replacing {@link #pixmap} with one of the matching size if the shrink changed or the old
+     * Pixmap was disposed. The per-pixel buffers don't depend on shrink, so they are kept.
+     * @param shrink how many times to halve the width and height of {@link #pixmap}; 0 draws at full size
+     * @return this, for chaining
+     */
+    public SmudgeRenderer shrink(int shrink) {
+        if(this.shrink != shrink || pixmap == null || pixmap.isDisposed()) {
+            this.shrink = shrink;
+            if(pixmap != null && !pixmap.isDisposed()) pixmap.dispose();
+            pixmap = new Pixmap(buffer.width >>> shrink, buffer.height >>> shrink, Pixmap.Format.RGBA8888);
+        }
+        return this;
+    }
+
     public int[] palette() {
         return palette;
     }
@@ -92,22 +147,11 @@ public class SmudgeRenderer {
     }
     public SmudgeRenderer palette(int[] color, int count) {
         this.palette = color;
-        count = Math.min(256, count);
+        count = Math.min(Math.min(256, count), color.length);
         if(paletteL == null) paletteL = new float[256];
         if(paletteA == null) paletteA = new float[256];
         if(paletteB == null) paletteB = new float[256];
-        for (int i = 0; i < color.length && i < count; i++) {
-            if ((color[i] & 0x80) == 0) {
-                paletteL[i] = -1f;
-                paletteA[i] = -1f;
-                paletteB[i] = -1f;
-            } else {
-                float lab = ColorTools.fromRGBA8888(color[i]);
-                paletteL[i] = ColorTools.channelL(lab);
-                paletteA[i] = ColorTools.channelA(lab);
-                paletteB[i] = ColorTools.channelB(lab);
-            }
-        }
+        if(count > 0) PreparedPalette.of(color).copyTo(paletteL, paletteA, paletteB, count);
         return this;
     }
     
@@ -120,26 +164,31 @@ public class SmudgeRenderer {
                 yy = (int)(0.5f + Math.max(0, (zPos * 3 + size * 3 - xPos - yPos) + 1)),
                 depth = (int)(0.5f + (xPos + yPos) * 2 + zPos * 3);
         boolean drawn = false;
-        final VoxMaterial m = materialMap.get(voxel & 255, defaultMaterial);
-        final float emit = m.getTrait(VoxMaterial.MaterialTrait._emit) * 0.75f;
-        final float alpha = m.getTrait(VoxMaterial.MaterialTrait._alpha);
+        final float[] traits = materialTable.traits;
+        final int mi = (voxel & 255) * MaterialTable.TRAITS;
+        final float emit = traits[mi + MaterialTable.EMIT] * 0.75f;
+        final float alpha = traits[mi + MaterialTable.ALPHA];
         final float hs = size * 0.5f;
-        for (int x = 0, ax = xx; x < 4 && ax < render.length; x++, ax++) {
-            for (int y = 0, ay = yy; y < 4 && ay < render[0].length; y++, ay++) {
-                if ((depth > depths[ax][ay] || (depth == depths[ax][ay] && colorL[ax][ay] < paletteL[voxel & 255])) && (alpha == 0f || bn(ax, ay) >= alpha)) {
+        final int w = buffer.width, h = buffer.height;
+        final int[] depths = buffer.depths, outlines = buffer.outlines, voxels = buffer.voxels;
+        final float[] colorL = buffer.colorL, colorA = buffer.colorA, colorB = buffer.colorB;
+        final byte[] indices = buffer.indices;
+        for (int x = 0, ax = xx; x < 4 && ax < w; x++, ax++) {
+            for (int y = 0, ay = yy, i = ax * h + yy; y < 4 && ay < h; y++, ay++, i++) {
+                if ((depth > depths[i] || (depth == depths[i] && colorL[i] < paletteL[voxel & 255])) && (alpha == 0f || bn(ax, ay) >= alpha)) {
                     drawn = true;
-                    colorL[ax][ay] = paletteL[voxel & 255];
-                    colorA[ax][ay] = paletteA[voxel & 255];
-                    colorB[ax][ay] = paletteB[voxel & 255];
-                    depths[ax][ay] = depth;
-                    materials[ax][ay] = m;
+                    colorL[i] = paletteL[voxel & 255];
+                    colorA[i] = paletteA[voxel & 255];
+                    colorB[i] = paletteB[voxel & 255];
+                    depths[i] = depth;
+                    indices[i] = voxel;
                     if(alpha == 0f)
-                        outlines[ax][ay] = ColorTools.toRGBA8888(ColorTools.limitToGamut(paletteL[voxel & 255] * (0.8f + emit), paletteA[voxel & 255], paletteB[voxel & 255], 1f));
+                        outlines[i] = ColorTools.toRGBA8888(ColorTools.limitToGamut(paletteL[voxel & 255] * (0.8f + emit), paletteA[voxel & 255], paletteB[voxel & 255], 1f));
 //                                Coloring.darken(palette[voxel & 255], 0.375f - emit);
 //                                Coloring.adjust(palette[voxel & 255], 0.625f + emit, neutral);
 //                    else
-//                        outlines[ax][ay] = palette[voxel & 255];
-                    voxels[ax][ay] = vx | vy << 10 | vz << 20;
+//                        outlines[i] = palette[voxel & 255];
+                    voxels[i] = vx | vy << 10 | vz << 20;
 //                    for (int xp = (int)xPos; xp < xPos + 0.5f; xp++) {
 //                        for (int yp = (int) yPos; yp < yPos + 0.5f; yp++) {
 //                            for (int zp = (int) zPos; zp < zPos + 0.5f; zp++) {
@@ -150,26 +199,26 @@ public class SmudgeRenderer {
                 }
             }
         }
+        if(drawn)
+            buffer.touch(xx, yy, xx + 3, yy + 3);
         if(xPos < -hs || yPos < -hs || zPos < -hs || xPos + hs > shadeZ.length || yPos + hs > shadeZ[0].length || zPos + hs > shadeX[0].length)
             System.out.println(xPos + ", " + yPos + ", " + zPos + " is out of bounds");
         else if(drawn) {
             shadeZ[(int) (hs + xPos)][(int) (hs + yPos)] = Math.max(shadeZ[(int) (hs + xPos)][(int) (hs + yPos)], (hs + zPos));
             shadeX[(int) (hs + yPos)][(int) (hs + zPos)] = Math.max(shadeX[(int) (hs + yPos)][(int) (hs + zPos)], (hs + xPos));
+            shadeBounds.touch((int) (hs + xPos), (int) (hs + yPos), (int) (hs + zPos));
         }
     }
     
+    /**
+     * Erases what the last blit drew and anything splatted since, touching only the pixels and shade cells that could
+     * have changed.
+     * @return this, for chaining
+     */
     public SmudgeRenderer clear() {
-        pixmap.setColor(0);
-        pixmap.fill();
-        fill(depths, 0);
-        fill(render, 0);
-        fill(outlines, (byte) 0);
-        fill(voxels, -1);
-        fill(shadeX, -1f);
-        fill(shadeZ, -1f);
-        fill(colorL, -1f);
-        fill(colorA, -1f);
-        fill(colorB, -1f);
+        buffer.erase(pixmap);
+        buffer.clear();
+        shadeBounds.clear(shadeX, shadeZ);
         return this;
     }
 
@@ -196,9 +245,12 @@ public class SmudgeRenderer {
      */
     public Pixmap blit(float yaw, float pitch, float roll) {
         final int threshold = 13;
-        pixmap.setColor(0);
-        pixmap.fill();
-        int xSize = render.length - 1, ySize = render[0].length - 1, depth;
+        buffer.erase(pixmap);
+        final int w = buffer.width, h = buffer.height;
+        final int[] depths = buffer.depths, voxels = buffer.voxels, render = buffer.render, outlines = buffer.outlines;
+        final float[] colorL = buffer.colorL, colorA = buffer.colorA, colorB = buffer.colorB;
+        final byte[] indices = buffer.indices;
+        int xSize = w - 1, ySize = h - 1, depth;
 //        for (int x = 0; x <= xSize; x++) {
 //            System.arraycopy(working[x], 0, render[x], 0, ySize);
 //        }
@@ -210,11 +262,13 @@ public class SmudgeRenderer {
         final float x_x = cYaw * cPitch, y_x = cYaw * sPitch * sRoll - sYaw * cRoll, z_x = cYaw * sPitch * cRoll + sYaw * sRoll;
         final float x_y = sYaw * cPitch, y_y = sYaw * sPitch * sRoll + cYaw * cRoll, z_y = sYaw * sPitch * cRoll - cYaw * sRoll;
         final float x_z = -sPitch, y_z = cPitch * sRoll, z_z = cPitch * cRoll;
-        VoxMaterial m;
+        final float[] traits = materialTable.traits;
+        int mi;
         final int step = 1 << shrink;
-        for (int sx = 0; sx <= xSize; sx++) {
-            for (int sy = 0; sy <= ySize; sy++) {
-                if((v = voxels[sx][sy]) != -1) {
+        final int startX = buffer.startX, startY = buffer.startY, endX = buffer.endX, endY = buffer.endY;
+        for (int sx = startX; sx <= endX; sx++) {
+            for (int sy = startY, si0 = sx * h + sy; sy <= endY; sy++, si0++) {
+                if((v = voxels[si0]) != -1) {
                     vx = v & 0x3FF;
                     vy = v >>> 10 & 0x3FF;
                     vz = v >>> 20 & 0x3FF;
@@ -227,22 +281,22 @@ public class SmudgeRenderer {
                     fy = (int)(ty);
                     tz = ox * x_z + oy * y_z + oz * z_z + hs + hs;
                     fz = (int)(tz);
-                    m = materials[sx][sy];
-                    float rough = m.getTrait(VoxMaterial.MaterialTrait._rough);
-                    float emit = m.getTrait(VoxMaterial.MaterialTrait._emit);
+                    mi = (indices[si0] & 255) * MaterialTable.TRAITS;
+                    float rough = traits[mi + MaterialTable.ROUGH];
+                    float emit = traits[mi + MaterialTable.EMIT];
                     float limit = 2;
                     // + (PaletteReducer.TRI_BLUE_NOISE[(sx & 63) + (sy << 6) + (fx + fy + fz >>> 2) & 4095] + 0.5) * 0x1p-7;
                     if (Math.abs(shadeX[fy][fz] - tx) <= limit || ((fy > 1 && Math.abs(shadeX[fy - 2][fz] - tx) <= limit) || (fy < shadeX.length - 2 && Math.abs(shadeX[fy + 2][fz] - tx) <= limit))) {
                         float spread = MathUtils.lerp(0.0025f, 0.001f, rough);
                         if (Math.abs(shadeZ[fx][fy] - tz) <= limit) {
                             spread *= 2f;
-                            colorL[sx][sy] += m.getTrait(VoxMaterial.MaterialTrait._ior) * 0.2f;
+                            colorL[si0] += traits[mi + MaterialTable.IOR] * 0.2f;
                         }
                         int dist;
                         for (int i = -3, si = sx + i; i <= 3; i++, si++) {
                             for (int j = -3, sj = sy + j; j <= 3; j++, sj++) {
                                 if((dist = Math.abs(i) + Math.abs(j)) > 3 || si < 0 || sj < 0 || si > xSize || sj > ySize) continue;
-                                colorL[si][sj] += spread * (4 - dist);
+                                colorL[si * h + sj] += spread * (4 - dist);
                             }
                         }
                     }
@@ -252,7 +306,7 @@ public class SmudgeRenderer {
                         for (int i = -3, si = sx + i; i <= 3; i++, si++) {
                             for (int j = -3, sj = sy + j; j <= 3; j++, sj++) {
                                 if((dist = Math.abs(i) + Math.abs(j)) > 3 || si < 0 || sj < 0 || si > xSize || sj > ySize) continue;
-                                colorL[si][sj] += spread * (4 - dist);
+                                colorL[si * h + sj] += spread * (4 - dist);
                             }
                         }
                     }
@@ -261,7 +315,7 @@ public class SmudgeRenderer {
                         for (int i = -12, si = sx + i; i <= 12; i++, si++) {
                             for (int j = -12, sj = sy + j; j <= 12; j++, sj++) {
                                 if(i * i + j * j > 144 || si < 0 || sj < 0 || si > xSize || sj > ySize) continue;
-                                colorL[si][sj] += spread;
+                                colorL[si * h + sj] += spread;
                             }
                         }
                     }
@@ -269,9 +323,9 @@ public class SmudgeRenderer {
             }
         }
         final int distance = 1;
-        for (int x = 0; x <= xSize; x++) {
-            for (int y = 0; y <= ySize; y++) {
-                if (colorA[x][y] >= 0f) {
+        for (int x = startX; x <= endX; x++) {
+            for (int y = startY, i = x * h + y; y <= endY; y++, i++) {
+                if (colorA[i] >= 0f) {
                     float maxL = 0f, minL = 1f, avgL = 0f,
                             maxA = 0f, minA = 1f, avgA = 0f,
                             maxB = 0f, minB = 1f, avgB = 0f,
@@ -279,17 +333,18 @@ public class SmudgeRenderer {
                     for (int xx = -distance; xx <= distance; xx++) {
                         if (x + xx < 0 || x + xx > xSize) continue;
                         for (int yy = -distance; yy <= distance; yy++) {
-                            if ((xx & yy) != 0 || y + yy < 0 || y + yy > ySize || colorA[x + xx][y + yy] <= 0f)
+                            final int n = i + xx * h + yy;
+                            if ((xx & yy) != 0 || y + yy < 0 || y + yy > ySize || colorA[n] <= 0f)
                                 continue;
-                            current = colorL[x + xx][y + yy];
+                            current = colorL[n];
                             maxL = Math.max(maxL, current);
                             minL = Math.min(minL, current);
                             avgL += current;
-                            current = colorA[x + xx][y + yy];
+                            current = colorA[n];
                             maxA = Math.max(maxA, current);
                             minA = Math.min(minA, current);
                             avgA += current;
-                            current = colorB[x + xx][y + yy];
+                            current = colorB[n];
                             maxB = Math.max(maxB, current);
                             minB = Math.min(minB, current);
                             avgB += current;
@@ -305,7 +360,7 @@ public class SmudgeRenderer {
                     avgL /= div;
                     avgA /= div;
                     avgB /= div;
-                    render[x][y] = ColorTools.toRGBA8888(ColorTools.limitToGamut(
+                    render[i] = ColorTools.toRGBA8888(ColorTools.limitToGamut(
                             Math.min(Math.max(((avgL - minL) < (maxL - avgL) ? minL : maxL) - 0.15625f, 0f), 1f),
                             (avgA - 0.5f) * neutral + 0.5f,
                             (avgB - 0.5f) * neutral + 0.5f, 1f));
@@ -354,33 +409,36 @@ public class SmudgeRenderer {
 //                }
 //            }
 //        }
-        for (int x = xSize; x >= 0; x--) {
-            for (int y = ySize; y >= 0; y--) {
-                if (colorA[x][y] >= 0f) {
-                    pixmap.drawPixel(x >>> shrink, y >>> shrink, render[x][y]);
+        for (int x = endX; x >= startX; x--) {
+            for (int y = endY, i = x * h + y; y >= startY; y--, i--) {
+                if (colorA[i] >= 0f) {
+                    pixmap.drawPixel(x >>> shrink, y >>> shrink, render[i]);
                 }
             }
         }
         if (outline) {
             int o;
-            for (int x = step; x <= xSize - step; x+= step) {
+            final int stepX = step * h;
+            // only multiples of step are checked, so round the start of the touched rectangle up to one
+            for (int x = Math.max(step, startX + step - 1 & -step), xEnd = Math.min(xSize - step, endX); x <= xEnd; x+= step) {
 //                final int hx = x;
                 final int hx = x >>> shrink;
-                for (int y = step; y <= ySize - step; y+= step) {
+                final int yStart = Math.max(step, startY + step - 1 & -step);
+                for (int y = yStart, i = x * h + yStart, yEnd = Math.min(ySize - step, endY); y <= yEnd; y+= step, i += step) {
 //                    final int hy = y;
                     int hy = y >>> shrink;
-                    if ((o = outlines[x][y]) != 0) {
-                        depth = depths[x][y];
-                        if (outlines[x - step][y] == 0 || depths[x - step][y] < depth - threshold) {
+                    if ((o = outlines[i]) != 0) {
+                        depth = depths[i];
+                        if (outlines[i - stepX] == 0 || depths[i - stepX] < depth - threshold) {
                             pixmap.drawPixel(hx - 1, hy    , o);
                         }
-                        if (outlines[x + step][y] == 0 || depths[x + step][y] < depth - threshold) {
+                        if (outlines[i + stepX] == 0 || depths[i + stepX] < depth - threshold) {
                             pixmap.drawPixel(hx + 1, hy    , o);
                         }
-                        if (outlines[x][y - step] == 0 || depths[x][y - step] < depth - threshold) {
+                        if (outlines[i - step] == 0 || depths[i - step] < depth - threshold) {
                             pixmap.drawPixel(hx    , hy - 1, o);
                         }
-                        if (outlines[x][y + step] == 0 || depths[x][y + step] < depth - threshold) {
+                        if (outlines[i + step] == 0 || depths[i + step] < depth - threshold) {
                             pixmap.drawPixel(hx    , hy + 1, o);
                         }
                     }
@@ -392,15 +450,9 @@ public class SmudgeRenderer {
             reducer.reduceScatter(pixmap);
         }
 
-        fill(render, 0);
-        fill(depths, 0);
-        fill(outlines, 0);
-        fill(voxels, -1);
-        fill(shadeX, -1);
-        fill(shadeZ, -1);
-        fill(colorL, -1f);
-        fill(colorA, -1f);
-        fill(colorB, -1f);
+        buffer.markDrawn(pixmap, shrink);
+        buffer.clear();
+        shadeBounds.clear(shadeX, shadeZ);
         return pixmap;
     }
 
@@ -412,24 +464,72 @@ public class SmudgeRenderer {
     // To move one z- in voxels is y - 3 in pixels.
 
     public Pixmap drawSplats(byte[][][] colors, float angleTurns, IntMap<VoxMaterial> materialMap) {
+        return drawSplats(new DenseVoxels(colors), angleTurns, materialMap);
+    }
+
+    /**
+     * Draws every voxel in {@code colors} rotated by {@code angleTurns} around the z-axis.
+     * This builds {@link #materialTable} from {@code materialMap} each time; to skip that when drawing many frames with
+     * the same materials, build a {@link MaterialTable} once and use {@link #drawSplats(VoxelGrid, float, MaterialTable)}.
+     * @param colors any VoxelGrid, such as a {@link SparseVoxels}, as large as this renderer's size on each axis
+     * @param angleTurns yaw rotation in turns, so 0.25 is a quarter-turn
+     * @param materialMap the materials for palette indices, or an empty IntMap to use the default for all
+     * @return {@link #pixmap}, containing the finished render
+     */
+    public Pixmap drawSplats(VoxelGrid colors, float angleTurns, IntMap<VoxMaterial> materialMap) {
         this.materialMap = materialMap;
+        return drawSplats(colors, angleTurns, materialTable.set(materialMap, defaultMaterial));
+    }
+
+    /**
+     * Draws every voxel in {@code colors} rotated by {@code angleTurns} around the z-axis, reading materials from an
+     * already-built table.
+     * @param colors a cube of palette indices, as large as this renderer's size on each axis
+     * @param angleTurns yaw rotation in turns, so 0.25 is a quarter-turn
+     * @param materials the traits of each palette index's material; copied into {@link #materialTable}
+     * @return {@link #pixmap}, containing the finished render
+     */
+    public Pixmap drawSplats(VoxelGrid colors, float angleTurns, MaterialTable materials) {
+        if(materials != materialTable)
+            materialTable.set(materials);
 //        Tools3D.fill(remade, 0);
 //        seed = Tools3D.hash64(colors) + NumberUtils.floatToRawIntBits(angleTurns);
-        final int size = colors.length;
+        final int size = colors.sizeX();
         final float hs = (size) * 0.5f;
         final float c = cos_(angleTurns), s = sin_(angleTurns);
-        for (int z = 0; z < size; z++) {
-            for (int x = 0; x < size; x++) {
-                for (int y = 0; y < size; y++) {
-                    final byte v = colors[x][y][z];
-                    if(v != 0)
-                    {
-                        final float xPos = (x-hs) * c - (y-hs) * s + size;
-                        final float yPos = (x-hs) * s + (y-hs) * c + size;
-                        splat(xPos, yPos, z, x, y, z, v);
-                    }
-                }
+        colors.forEach(new VoxelGrid.Visitor() {
+            @Override
+            public void visit(int x, int y, int z, byte v) {
+                final float xPos = (x-hs) * c - (y-hs) * s + size;
+                final float yPos = (x-hs) * s + (y-hs) * c + size;
+                splat(xPos, yPos, z, x, y, z, v);
             }
+        });
+        return blit(angleTurns);
+    }
+
+    /**
+     * Draws a {@link PreparedModel} rotated by {@code angleTurns} around the z-axis. The model has already dropped the
+     * voxels that can't be seen and looked up its materials, so this only rotates and draws its voxel list; use this
+     * when drawing the same model at many angles. This renderer's palette should already be set from
+     * {@link PreparedModel#palette}.
+     * @param model a model prepared with the same size as this renderer
+     * @param angleTurns yaw rotation in turns, so 0.25 is a quarter-turn
+     * @return {@link #pixmap}, containing the finished render
+     */
+    public Pixmap drawSplats(PreparedModel model, float angleTurns) {
+        if(model.materials != materialTable)
+            materialTable.set(model.materials);
+        final int size = model.size;
+        final float hs = (size) * 0.5f;
+        final float c = cos_(angleTurns), s = sin_(angleTurns);
+        final int[] positions = model.voxels.positions;
+        final byte[] colors = model.voxels.colors;
+        for (int i = 0, n = positions.length; i < n; i++) {
+            final int p = positions[i], x = p >>> 10 & 1023, y = p & 1023, z = p >>> 20;
+            final float xPos = (x-hs) * c - (y-hs) * s + size;
+            final float yPos = (x-hs) * s + (y-hs) * c + size;
+            splat(xPos, yPos, z, x, y, z, colors[i]);
         }
         return blit(angleTurns);
     }
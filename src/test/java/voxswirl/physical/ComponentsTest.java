@@ -0,0 +1,131 @@
+package voxswirl.physical;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+
+import static org.junit.Assert.assertEquals;
+import static voxswirl.physical.SampleVolumes.assertSameVoxels;
+
+/**
+ * Checks {@link Components} against a breadth-first search, and {@link Tools3D#largestPart(byte[][][])} against the
+ * repeated {@link Tools3D#flood(byte[][][], byte[][][])} it used before.
+ */
+public class ComponentsTest {
+    @Test
+    public void largestPartMatchesFlood() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(21L, 35)) {
+            assertSameVoxels(c.toString(), floodLargestPart(c.voxels), Tools3D.largestPart(c.voxels));
+        }
+    }
+
+    @Test
+    public void labelsMatchSearch() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(22L, 129)) {
+            final byte[][][] voxels = c.voxels;
+            final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+            final int[][][] expected = new int[xs][ys][zs];
+            final int count = searchLabels(voxels, expected);
+            final Components parts = Components.label(voxels);
+            assertEquals(c.toString(), count, parts.count);
+            final int[] voxelCounts = new int[count + 1];
+            for (int x = 0; x < xs; x++) {
+                for (int y = 0; y < ys; y++) {
+                    for (int z = 0; z < zs; z++) {
+                        assertEquals(c + " at " + x + "," + y + "," + z, expected[x][y][z], parts.get(x, y, z));
+                        voxelCounts[expected[x][y][z]]++;
+                    }
+                }
+            }
+            for (int n = 1; n <= count; n++) {
+                assertEquals(c.toString(), voxelCounts[n], parts.voxelCounts[n]);
+                int minX = xs, minY = ys, minZ = zs, maxX = -1, maxY = -1, maxZ = -1;
+                for (int x = 0; x < xs; x++) {
+                    for (int y = 0; y < ys; y++) {
+                        for (int z = 0; z < zs; z++) {
+                            if(expected[x][y][z] != n) continue;
+                            minX = Math.min(minX, x);
+                            minY = Math.min(minY, y);
+                            minZ = Math.min(minZ, z);
+                            maxX = Math.max(maxX, x);
+                            maxY = Math.max(maxY, y);
+                            maxZ = Math.max(maxZ, z);
+                        }
+                    }
+                }
+                assertEquals(c.toString(), minX, parts.minX[n]);
+                assertEquals(c.toString(), minY, parts.minY[n]);
+                assertEquals(c.toString(), minZ, parts.minZ[n]);
+                assertEquals(c.toString(), maxX, parts.maxX[n]);
+                assertEquals(c.toString(), maxY, parts.maxY[n]);
+                assertEquals(c.toString(), maxZ, parts.maxZ[n]);
+            }
+        }
+    }
+
+    /**
+     * Numbers each face-connected part from 1, in the order its first voxel comes in x, y, z order, by searching out
+     * from that voxel.
+     * @return how many parts there are
+     */
+    private static int searchLabels(byte[][][] voxels, int[][][] labels) {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        final int[][] steps = {{-1, 0, 0}, {1, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 0, -1}, {0, 0, 1}};
+        final ArrayDeque<int[]> open = new ArrayDeque<>();
+        int count = 0;
+        for (int x = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                for (int z = 0; z < zs; z++) {
+                    if(voxels[x][y][z] == 0 || labels[x][y][z] != 0) continue;
+                    labels[x][y][z] = ++count;
+                    open.add(new int[]{x, y, z});
+                    while (!open.isEmpty()) {
+                        final int[] p = open.poll();
+                        for (int[] s : steps) {
+                            final int nx = p[0] + s[0], ny = p[1] + s[1], nz = p[2] + s[2];
+                            if(nx < 0 || ny < 0 || nz < 0 || nx >= xs || ny >= ys || nz >= zs
+                                    || voxels[nx][ny][nz] == 0 || labels[nx][ny][nz] != 0) continue;
+                            labels[nx][ny][nz] = count;
+                            open.add(new int[]{nx, ny, nz});
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * How largestPart() worked before {@link Components}: flood from the first voxel left, keep the part if it is
+     * larger than any before it, remove it, and repeat.
+     */
+    private static byte[][][] floodLargestPart(byte[][][] voxels) {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        int fst = Tools3D.firstTight(voxels), bestSize = 0, currentSize, x, y, z;
+
+        byte[][][] remaining = Tools3D.deepCopy(voxels), filled = new byte[xs][ys][zs],
+                choice = new byte[xs][ys][zs];
+        while (fst >= 0) {
+            Tools3D.fill(filled, 0);
+            x = fst / (ys * zs);
+            y = (fst / zs) % ys;
+            z = fst % zs;
+            filled[x][y][z] = voxels[x][y][z];
+            currentSize = Tools3D.flood(filled, remaining);
+            if(currentSize > bestSize) {
+                bestSize = currentSize;
+                Tools3D.deepCopyInto(filled, choice);
+            }
+            for (x = 0; x < xs; x++) {
+                for (y = 0; y < ys; y++) {
+                    for (z = 0; z < zs; z++) {
+                        if(filled[x][y][z] != 0)
+                            remaining[x][y][z] = 0;
+                    }
+                }
+            }
+            fst = Tools3D.firstTight(remaining);
+        }
+        return choice;
+    }
+}
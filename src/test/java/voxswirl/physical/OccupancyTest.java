@@ -0,0 +1,191 @@
+package voxswirl.physical;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static voxswirl.physical.SampleVolumes.assertSameVoxels;
+
+/**
+ * Checks {@link Occupancy}, and the soak and surface methods of {@link Tools3D} that use it, against the byte-by-byte
+ * neighbor checks they replaced.
+ */
+public class OccupancyTest {
+    @Test
+    public void matchesVoxels() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(23L, 129)) {
+            final byte[][][] voxels = c.voxels;
+            final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+            final Occupancy filled = new Occupancy(voxels), surface = filled.surface();
+            assertEquals(c.toString(), Tools3D.count(voxels), filled.count());
+            for (int x = -1; x <= xs; x++) {
+                for (int y = -1; y <= ys; y++) {
+                    for (int z = -1; z <= zs; z++) {
+                        final String at = c + " at " + x + "," + y + "," + z;
+                        final boolean inside = x >= 0 && y >= 0 && z >= 0 && x < xs && y < ys && z < zs;
+                        assertEquals(at, inside && voxels[x][y][z] != 0, filled.get(x, y, z));
+                        assertEquals(at, isSurface(voxels, x, y, z) > 0, surface.get(x, y, z));
+                        if(inside) assertEquals(at, occupiedFaces(voxels, x, y, z), filled.faces(x, y, z));
+                    }
+                }
+            }
+            // bits past sizeZ must stay 0, or surfaceWord() would see phantom neighbors
+            final int spare = zs & 63;
+            if(spare != 0) {
+                for (int i = filled.wordsZ - 1; i < filled.bits.length; i += filled.wordsZ) {
+                    assertEquals(c.toString(), 0L, filled.bits[i] >>> spare);
+                    assertEquals(c.toString(), 0L, surface.bits[i] >>> spare);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void setMatchesRebuilding() {
+        final Random random = new Random(24L);
+        for (SampleVolumes.Case c : SampleVolumes.cases(24L, 65)) {
+            final byte[][][] voxels = c.copy();
+            final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+            final Occupancy changed = new Occupancy(voxels);
+            for (int i = 0; i < 50; i++) {
+                final int x = random.nextInt(xs), y = random.nextInt(ys), z = random.nextInt(zs);
+                final boolean fill = random.nextBoolean();
+                voxels[x][y][z] = (byte) (fill ? 1 : 0);
+                changed.set(x, y, z, fill);
+            }
+            assertArrayEquals(c.toString(), new Occupancy(voxels).bits, changed.bits);
+        }
+    }
+
+    @Test
+    public void surfaceMatchesNeighborChecks() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(25L, 129)) {
+            final SurfaceVoxels expected = oldSurface(c.voxels), actual = Tools3D.surface(c.voxels);
+            assertEquals(c.toString(), expected.sizeX, actual.sizeX);
+            assertEquals(c.toString(), expected.sizeY, actual.sizeY);
+            assertEquals(c.toString(), expected.sizeZ, actual.sizeZ);
+            assertArrayEquals(c.toString(), expected.positions, actual.positions);
+            assertArrayEquals(c.toString(), expected.colors, actual.colors);
+            assertArrayEquals(c.toString(), expected.faces, actual.faces);
+        }
+    }
+
+    @Test
+    public void soakMatchesNeighborChecks() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(26L, 129)) {
+            final byte[][][] expected = oldSoak(c.voxels);
+            assertSameVoxels(c.toString(), expected, Tools3D.soak(c.voxels));
+            assertSameVoxels(c + ", parallel", expected, Tools3D.soakParallel(c.voxels));
+        }
+    }
+
+    @Test
+    public void soakInPlaceMatchesNeighborChecks() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(27L, 129)) {
+            final byte[][][] expected = c.copy(), actual = c.copy(), parallel = c.copy();
+            oldSoakInPlace(expected);
+            Tools3D.soakInPlace(actual);
+            Tools3D.soakInPlaceParallel(parallel);
+            assertSameVoxels(c.toString(), expected, actual);
+            assertSameVoxels(c + ", parallel", expected, parallel);
+        }
+    }
+
+    // The rest is how Tools3D found surface and hidden voxels before Occupancy.
+
+    private static int isSurface(byte[][][] voxels, int x, int y, int z) {
+        if(x < 0 || y < 0 || z < 0 ||
+                x >= voxels.length || y >= voxels[x].length || z >= voxels[x][y].length ||
+                voxels[x][y][z] == 0)
+            return 0;
+        if(x <= 0 || voxels[x-1][y][z] == 0) return 1;
+        if(y <= 0 || voxels[x][y-1][z] == 0) return 2;
+        if(z <= 0 || voxels[x][y][z-1] == 0) return 3;
+        if(x >= voxels.length - 1 || voxels[x+1][y][z] == 0) return 4;
+        if(y >= voxels[x].length - 1 || voxels[x][y+1][z] == 0) return 5;
+        if(z >= voxels[x][y].length - 1 || voxels[x][y][z+1] == 0) return 6;
+        return -1;
+    }
+
+    private static int occupiedFaces(byte[][][] voxels, int x, int y, int z) {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        int faces = 0;
+        if(x > 0 && voxels[x-1][y][z] != 0) faces |= SurfaceVoxels.X_MINUS;
+        if(y > 0 && voxels[x][y-1][z] != 0) faces |= SurfaceVoxels.Y_MINUS;
+        if(z > 0 && voxels[x][y][z-1] != 0) faces |= SurfaceVoxels.Z_MINUS;
+        if(x < xs - 1 && voxels[x+1][y][z] != 0) faces |= SurfaceVoxels.X_PLUS;
+        if(y < ys - 1 && voxels[x][y+1][z] != 0) faces |= SurfaceVoxels.Y_PLUS;
+        if(z < zs - 1 && voxels[x][y][z+1] != 0) faces |= SurfaceVoxels.Z_PLUS;
+        return faces;
+    }
+
+    private static SurfaceVoxels oldSurface(byte[][][] voxels) {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        int n = 0;
+        for (int x = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                for (int z = 0; z < zs; z++) {
+                    if(isSurface(voxels, x, y, z) > 0) ++n;
+                }
+            }
+        }
+        final int[] positions = new int[n];
+        final byte[] colors = new byte[n], faces = new byte[n];
+        int i = 0;
+        for (int z = 0; z < zs; z++) {
+            for (int x = 0; x < xs; x++) {
+                for (int y = 0; y < ys; y++) {
+                    if(isSurface(voxels, x, y, z) > 0) {
+                        positions[i] = z << 20 | x << 10 | y;
+                        colors[i] = voxels[x][y][z];
+                        faces[i++] = (byte) occupiedFaces(voxels, x, y, z);
+                    }
+                }
+            }
+        }
+        return new SurfaceVoxels(xs, ys, zs, positions, colors, faces);
+    }
+
+    private static void oldSoakInPlace(byte[][][] voxels) {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        byte b;
+        for (int x = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                for (int z = 0; z < zs; z++) {
+                    if(isSurface(voxels, x, y, z) > 0){
+                        b = voxels[x][y][z];
+                        if(isSurface(voxels, x, y, z-1) == -1) voxels[x][y][z-1] = b;
+                        if(isSurface(voxels, x-1, y, z) == -1) voxels[x-1][y][z] = b;
+                        if(isSurface(voxels, x, y-1, z) == -1) voxels[x][y-1][z] = b;
+                        if(isSurface(voxels, x+1, y, z) == -1) voxels[x+1][y][z] = b;
+                        if(isSurface(voxels, x, y+1, z) == -1) voxels[x][y+1][z] = b;
+                        if(isSurface(voxels, x, y, z+1) == -1) voxels[x][y][z+1] = b;
+                    }
+                }
+            }
+        }
+    }
+
+    private static byte[][][] oldSoak(byte[][][] voxels) {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        byte[][][] next = new byte[xs][ys][zs];
+        byte b;
+        for (int x = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                for (int z = 0; z < zs; z++) {
+                    if(isSurface(voxels, x, y, z) > 0){
+                        next[x][y][z] = b = voxels[x][y][z];
+                        if(isSurface(voxels, x, y, z-1) == -1) next[x][y][z-1] = b;
+                        if(isSurface(voxels, x-1, y, z) == -1) next[x-1][y][z] = b;
+                        if(isSurface(voxels, x, y-1, z) == -1) next[x][y-1][z] = b;
+                        if(isSurface(voxels, x+1, y, z) == -1) next[x+1][y][z] = b;
+                        if(isSurface(voxels, x, y+1, z) == -1) next[x][y+1][z] = b;
+                        if(isSurface(voxels, x, y, z+1) == -1) next[x][y][z+1] = b;
+                    }
+                }
+            }
+        }
+        return next;
+    }
+}
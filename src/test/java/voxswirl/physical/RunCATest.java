@@ -0,0 +1,112 @@
+package voxswirl.physical;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static voxswirl.physical.SampleVolumes.assertSameVoxels;
+
+/**
+ * Checks {@link Tools3D#runCA(byte[][][], int)} and {@link Tools3D#runCAParallel(byte[][][], int)}, which slide a
+ * color histogram along z, against counting all 27 neighbors of every voxel again, as runCA() did before.
+ */
+public class RunCATest {
+    /**
+     * The shared volumes, plus some with only colors 1 to 3, so the kept color 2 and ties between colors come up often.
+     */
+    private static List<SampleVolumes.Case> cases() {
+        final List<SampleVolumes.Case> cases = new ArrayList<>(SampleVolumes.cases(31L, 35));
+        final Random random = new Random(32L);
+        final int[][] shapes = {{3, 3, 3}, {4, 5, 6}, {9, 7, 11}, {17, 18, 19}, {6, 5, 66}};
+        for (int[] s : shapes) {
+            for (double density : new double[]{0.3, 0.6, 0.85}) {
+                cases.add(new SampleVolumes.Case("3 colors " + density,
+                        SampleVolumes.filled(random, s[0], s[1], s[2], density, 3)));
+            }
+        }
+        return cases;
+    }
+
+    @Test
+    public void matchesFullCount() {
+        for (SampleVolumes.Case c : cases()) {
+            final byte[][][] original = c.copy();
+            for (int level = 0; level <= 4; level++) {
+                final String message = c + ", level " + level;
+                final byte[][][] expected = oldRunCA(c.voxels, level);
+                assertSameVoxels(message, expected, Tools3D.runCA(c.voxels, level));
+                assertSameVoxels(message + ", parallel", expected, Tools3D.runCAParallel(c.voxels, level));
+            }
+            assertSameVoxels(c + " was changed", original, c.voxels);
+        }
+    }
+
+    // runCA() before the sliding histogram, with its one-thread loop inlined.
+
+    private static byte[][][] oldRunCA(byte[][][] voxels, int smoothLevel) {
+        if(smoothLevel < 1)
+            return voxels;
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
+        int[] colorCount = new int[256];
+        byte[][][] vs0 = Tools3D.deepCopy(voxels), vs1 = new byte[xs][ys][zs];
+        for(int v = 0; v < smoothLevel; v++)
+        {
+            if(v >= 1)
+            {
+                Tools3D.deepCopyInto(vs1, vs0);
+            }
+            for(int x = 0; x < xs; x++)
+            {
+                for(int y = 0; y < ys; y++)
+                {
+                    for(int z = 0; z < zs; z++)
+                    {
+                        Arrays.fill(colorCount, 0);
+                        if(x == 0 || y == 0 || z == 0 || x == xs - 1 || y == ys - 1 || z == zs - 1 || vs0[x][y][z] == 2)
+                        {
+                            colorCount[vs0[x][y][z] & 255] = 10000;
+                            colorCount[0] = -100000;
+                        }
+                        else
+                        {
+                            for(int xx = -1; xx < 2; xx++)
+                            {
+                                for(int yy = -1; yy < 2; yy++)
+                                {
+                                    for(int zz = -1; zz < 2; zz++)
+                                    {
+                                        byte smallColor = vs0[x + xx][y + yy][z + zz];
+                                        colorCount[smallColor & 255]++;
+                                    }
+                                }
+                            }
+                        }
+                        if(colorCount[0] >= 23)
+                        {
+                            vs1[x][y][z] = 0;
+                        }
+                        else
+                        {
+                            byte max = 0;
+                            int cc = colorCount[0] / 3, tmp;
+                            for(byte idx = 1; idx != 0; idx++)
+                            {
+                                tmp = colorCount[idx & 255];
+                                if(tmp > 0 && tmp > cc)
+                                {
+                                    cc = tmp;
+                                    max = idx;
+                                }
+                            }
+                            vs1[x][y][z] = max;
+                        }
+                    }
+                }
+            }
+        }
+        return vs1;
+    }
+}
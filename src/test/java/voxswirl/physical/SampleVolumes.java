@@ -0,0 +1,119 @@
+package voxswirl.physical;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Volumes to check new code against old code with: the edge cases (empty, full, one voxel, sizes of 1 and 2), sizes
+ * that don't split evenly into slabs or 64-bit words, and random volumes of several densities, some with solid
+ * insides so they have hidden voxels.
+ */
+final class SampleVolumes {
+    private SampleVolumes() {
+    }
+
+    /**
+     * A named volume, so a failed assertion says which one it was.
+     */
+    static final class Case {
+        final String name;
+        final byte[][][] voxels;
+
+        Case(String name, byte[][][] voxels) {
+            this.name = name;
+            this.voxels = voxels;
+        }
+
+        /**
+         * @return a copy of {@link #voxels}, for code that changes its input
+         */
+        byte[][][] copy() {
+            return Tools3D.deepCopy(voxels);
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + voxels.length + "x" + voxels[0].length + "x" + voxels[0][0].length + ")";
+        }
+    }
+
+    /**
+     * Gets every case with no side larger than maxSize; the random ones are the same for the same seed.
+     */
+    static List<Case> cases(long seed, int maxSize) {
+        final Random random = new Random(seed);
+        final List<Case> cases = new ArrayList<>();
+        final int[][] shapes = {{1, 1, 1}, {2, 2, 2}, {1, 5, 3}, {5, 1, 7}, {3, 4, 1}, {7, 7, 7}, {9, 8, 10},
+                {16, 16, 16}, {17, 13, 11}, {5, 6, 63}, {4, 3, 64}, {6, 5, 65}, {33, 31, 35}, {12, 9, 129}};
+        for (int[] s : shapes) {
+            if(s[0] > maxSize || s[1] > maxSize || s[2] > maxSize) continue;
+            cases.add(new Case("empty", new byte[s[0]][s[1]][s[2]]));
+            cases.add(new Case("full", filled(random, s[0], s[1], s[2], 1.0, 1)));
+            cases.add(new Case("one color", filled(random, s[0], s[1], s[2], 1.0, 0)));
+            cases.add(new Case("one voxel", single(random, s[0], s[1], s[2], s[0] / 2, s[1] / 2, s[2] / 2)));
+            cases.add(new Case("corner voxel", single(random, s[0], s[1], s[2], s[0] - 1, 0, s[2] - 1)));
+            for (double density : new double[]{0.1, 0.5, 0.9}) {
+                cases.add(new Case("random " + density, filled(random, s[0], s[1], s[2], density, 255)));
+            }
+            cases.add(new Case("blob", blob(random, s[0], s[1], s[2])));
+        }
+        return cases;
+    }
+
+    /**
+     * Fills each cell with the given chance; filled cells get a color from 1 to colors, or all the same color if
+     * colors is 0.
+     */
+    static byte[][][] filled(Random random, int xs, int ys, int zs, double density, int colors) {
+        final byte[][][] voxels = new byte[xs][ys][zs];
+        final int color = 1 + random.nextInt(255);
+        for (int x = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                for (int z = 0; z < zs; z++) {
+                    if(random.nextDouble() < density)
+                        voxels[x][y][z] = (byte) (colors == 0 ? color : 1 + random.nextInt(colors));
+                }
+            }
+        }
+        return voxels;
+    }
+
+    static byte[][][] single(Random random, int xs, int ys, int zs, int x, int y, int z) {
+        final byte[][][] voxels = new byte[xs][ys][zs];
+        voxels[x][y][z] = (byte) (1 + random.nextInt(255));
+        return voxels;
+    }
+
+    /**
+     * A solid ellipsoid with a few colors and a few holes, plus scattered voxels outside it.
+     */
+    static byte[][][] blob(Random random, int xs, int ys, int zs) {
+        final byte[][][] voxels = new byte[xs][ys][zs];
+        for (int x = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                for (int z = 0; z < zs; z++) {
+                    final double dx = (x + 0.5) / xs - 0.5, dy = (y + 0.5) / ys - 0.5, dz = (z + 0.5) / zs - 0.5;
+                    if(dx * dx + dy * dy + dz * dz < 0.2 ? random.nextInt(20) != 0 : random.nextInt(30) == 0)
+                        voxels[x][y][z] = (byte) (1 + random.nextInt(4) * 60);
+                }
+            }
+        }
+        return voxels;
+    }
+
+    static void assertSameVoxels(String message, byte[][][] expected, byte[][][] actual) {
+        assertEquals(message, expected.length, actual.length);
+        for (int x = 0; x < expected.length; x++) {
+            assertEquals(message, expected[x].length, actual[x].length);
+            for (int y = 0; y < expected[x].length; y++) {
+                if(!Arrays.equals(expected[x][y], actual[x][y]))
+                    assertArrayEquals(message + " at x=" + x + ", y=" + y, expected[x][y], actual[x][y]);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package voxswirl.physical;
+
+import org.junit.Test;
+import voxswirl.visual.Coloring;
+
+import static voxswirl.physical.SampleVolumes.assertSameVoxels;
+
+/**
+ * Each parallel method in {@link Tools3D} must give exactly what its one-thread version gives. Every volume with more
+ * than one x is split into several slabs, however many threads the common pool has.
+ */
+public class Tools3DParallelTest {
+    @Test
+    public void blockyScale() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(1L, 65)) {
+            assertSameVoxels(c.toString(), Tools3D.blockyScale(c.voxels), Tools3D.blockyScaleParallel(c.voxels));
+        }
+    }
+
+    @Test
+    public void smoothScale() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(2L, 65)) {
+            assertSameVoxels(c.toString(), Tools3D.smoothScale(c.voxels), Tools3D.smoothScaleParallel(c.voxels));
+        }
+    }
+
+    @Test
+    public void simpleScale() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(3L, 65)) {
+            assertSameVoxels(c.toString(), Tools3D.simpleScale(c.voxels), Tools3D.simpleScaleParallel(c.voxels));
+        }
+    }
+
+    @Test
+    public void soak() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(4L, 129)) {
+            assertSameVoxels(c.toString(), Tools3D.soak(c.voxels), Tools3D.soakParallel(c.voxels));
+        }
+    }
+
+    @Test
+    public void soakInPlace() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(5L, 129)) {
+            final byte[][][] expected = c.copy(), actual = c.copy();
+            Tools3D.soakInPlace(expected);
+            Tools3D.soakInPlaceParallel(actual);
+            assertSameVoxels(c.toString(), expected, actual);
+        }
+    }
+
+    @Test
+    public void runCA() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(6L, 35)) {
+            for (int level = 0; level <= 3; level++) {
+                assertSameVoxels(c + ", level " + level,
+                        Tools3D.runCA(c.voxels, level), Tools3D.runCAParallel(c.voxels, level));
+            }
+        }
+    }
+
+    @Test
+    public void soakDouble() {
+        for (SampleVolumes.Case c : SampleVolumes.cases(7L, 35)) {
+            for (int[] palette : new int[][]{Coloring.AURORA, Coloring.HALTONIC255}) {
+                assertSameVoxels(c.toString(), Tools3D.soakDouble(c.voxels, palette),
+                        Tools3D.soakDoubleParallel(c.voxels, palette));
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package voxswirl.visual;
+
+import com.github.tommyettinger.colorful.oklab.ColorTools;
+import org.junit.Test;
+import voxswirl.physical.Tools3D;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks what {@link PreparedPalette} and {@link Tools3D#lightness(int[])} work out ahead of time against converting
+ * each color when it is needed, as the renderers and {@link Tools3D#choose(int, int, int[])} did before.
+ */
+public class PreparedPaletteTest {
+    private static int[][] palettes() {
+        final Random random = new Random(25L);
+        final int[] randomColors = new int[256], withClear = new int[256];
+        for (int i = 1; i < 256; i++) {
+            randomColors[i] = random.nextInt() | 0xFF;
+            // alpha from 0 to 255, so about half are treated as transparent
+            withClear[i] = random.nextInt();
+        }
+        return new int[][]{Coloring.AURORA, Coloring.HALTONIC255, randomColors, withClear,
+                Arrays.copyOf(Coloring.DB16, 16), new int[]{0, 0xFF0000FF}, new int[0]};
+    }
+
+    @Test
+    public void channelsMatchConversion() {
+        for (int[] palette : palettes()) {
+            final PreparedPalette prepared = PreparedPalette.of(palette);
+            for (int i = 0; i < 256; i++) {
+                final int color = i < palette.length ? palette[i] : 0;
+                final String at = palette.length + " colors, index " + i;
+                assertEquals(at, color, prepared.rgba[i]);
+                if((color & 0x80) == 0) {
+                    assertEquals(at, -1f, prepared.l[i], 0f);
+                    assertEquals(at, -1f, prepared.a[i], 0f);
+                    assertEquals(at, -1f, prepared.b[i], 0f);
+                } else {
+                    final float lab = ColorTools.fromRGBA8888(color);
+                    assertEquals(at, ColorTools.channelL(lab), prepared.l[i], 0f);
+                    assertEquals(at, ColorTools.channelA(lab), prepared.a[i], 0f);
+                    assertEquals(at, ColorTools.channelB(lab), prepared.b[i], 0f);
+                }
+                assertEquals(at, Coloring.darken(color, 0.375f), prepared.outlines[i]);
+            }
+        }
+    }
+
+    @Test
+    public void cacheMatchesContents() {
+        PreparedPalette.clearCache();
+        final int[] palette = Coloring.AURORA.clone();
+        final PreparedPalette prepared = PreparedPalette.of(palette);
+        assertSame(prepared, PreparedPalette.of(palette.clone()));
+        final int[] shortPalette = Arrays.copyOf(Coloring.DB16, 16);
+        assertSame(PreparedPalette.of(shortPalette), PreparedPalette.of(Arrays.copyOf(shortPalette, 256)));
+
+        // changing the caller's array later must not change what was prepared from it
+        palette[5] ^= 0xFFFFFF00;
+        final PreparedPalette changed = PreparedPalette.of(palette);
+        assertNotSame(prepared, changed);
+        assertEquals(Coloring.AURORA[5], prepared.rgba[5]);
+        assertEquals(palette[5], changed.rgba[5]);
+        assertFalse(prepared.equals(changed));
+
+        // a palette with the same hash but different colors must not be handed out
+        final int[] collides = {1, 0}, original = {0, 31};
+        assertEquals(PreparedPalette.of(original).hashCode(), PreparedPalette.of(collides).hashCode());
+        assertEquals(1, PreparedPalette.of(collides).rgba[0]);
+        assertEquals(0, PreparedPalette.of(original).rgba[0]);
+    }
+
+    /**
+     * Each renderer keeps its own copy of the channels, so changing one renderer's palette arrays can't change another.
+     */
+    @Test
+    public void renderersCopyChannels() {
+        final SmudgeRenderer first = new SmudgeRenderer(8).palette(Coloring.AURORA);
+        final SmudgeRenderer second = new SmudgeRenderer(8).palette(Coloring.AURORA);
+        final SmudgeRenderer copied = new SmudgeRenderer(8).set(first);
+        final PreparedPalette prepared = PreparedPalette.of(Coloring.AURORA);
+        assertNotSame(first.paletteL, second.paletteL);
+        assertNotSame(first.paletteL, copied.paletteL);
+        assertNotSame(prepared.l, first.paletteL);
+        assertArrayEquals(prepared.l, second.paletteL, 0f);
+        assertArrayEquals(prepared.a, copied.paletteA, 0f);
+        first.paletteL[3] = 0.5f;
+        first.paletteB[3] = 0.5f;
+        assertEquals(prepared.l[3], second.paletteL[3], 0f);
+        assertEquals(prepared.b[3], copied.paletteB[3], 0f);
+        assertEquals(prepared.l[3], new SimpleRenderer(8).palette(Coloring.AURORA).paletteL[3], 0f);
+    }
+
+    /**
+     * SmudgeRenderer.palette(int[], int) only replaces the first count colors, as it did before.
+     */
+    @Test
+    public void smudgePaletteCount() {
+        final SmudgeRenderer renderer = new SmudgeRenderer(8).palette(Coloring.AURORA);
+        final float[] before = renderer.paletteL.clone();
+        renderer.palette(Coloring.HALTONIC255, 10);
+        final PreparedPalette haltonic = PreparedPalette.of(Coloring.HALTONIC255);
+        for (int i = 0; i < 256; i++) {
+            assertEquals("index " + i, i < 10 ? haltonic.l[i] : before[i], renderer.paletteL[i], 0f);
+        }
+        renderer.palette(Coloring.HALTONIC255, -1);
+        assertEquals(before[20], renderer.paletteL[20], 0f);
+    }
+
+    @Test
+    public void chooseMatchesConversion() {
+        for (int[] palette : palettes()) {
+            final float[] lightness = Tools3D.lightness(palette);
+            assertEquals(256, lightness.length);
+            for (int a = 0; a < palette.length; a++) {
+                for (int b = 0; b < palette.length; b++) {
+                    assertEquals(a + " and " + b, Tools3D.choose(a, b, palette), Tools3D.choose(a, b, lightness));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package voxswirl.visual;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.IntMap;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import voxswirl.physical.VoxMaterial;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renderers only clear the region their last render touched; drawing with a renderer that already drew something else
+ * must give the same pixels as drawing with a new one, which clears everything.
+ */
+public class RendererReuseTest {
+    private static final int SIZE = 20;
+    private static final float[] ANGLES = {0f, 0.125f, 0.3f};
+
+    private static IntMap<VoxMaterial> materials;
+    /**
+     * The Pixmaps of every renderer a test makes, which hold native memory until disposed.
+     */
+    private final List<Pixmap> pixmaps = new ArrayList<>();
+
+    @BeforeClass
+    public static void loadNatives() {
+        GdxNativesLoader.load();
+        materials = new IntMap<>();
+        final VoxMaterial glowing = new VoxMaterial();
+        glowing.putTrait(VoxMaterial.MaterialTrait._emit, 0.8f);
+        materials.put(5, glowing);
+        final VoxMaterial clear = new VoxMaterial();
+        clear.putTrait(VoxMaterial.MaterialTrait._alpha, 0.5f);
+        materials.put(9, clear);
+    }
+
+    /**
+     * The volumes drawn one after another: large ones first, so later, smaller ones are drawn over what they leave.
+     */
+    private static byte[][][][] models() {
+        final Random random = new Random(123);
+        final byte[][][] full = new byte[SIZE][SIZE][SIZE], blob = new byte[SIZE][SIZE][SIZE],
+                corner = new byte[SIZE][SIZE][SIZE], single = new byte[SIZE][SIZE][SIZE],
+                glow = new byte[SIZE][SIZE][SIZE], empty = new byte[SIZE][SIZE][SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    full[x][y][z] = (byte) (1 + random.nextInt(16));
+                    final int dx = x - SIZE / 2, dy = y - SIZE / 2, dz = z - SIZE / 2;
+                    if(dx * dx + dy * dy + dz * dz < SIZE * SIZE / 6 && random.nextInt(8) != 0)
+                        blob[x][y][z] = (byte) (1 + random.nextInt(12));
+                }
+            }
+        }
+        corner[0][0][0] = 3;
+        corner[1][0][0] = 9;
+        corner[SIZE - 1][SIZE - 1][SIZE - 1] = 4;
+        single[SIZE / 2][SIZE / 3][SIZE - 1] = 7;
+        glow[SIZE / 2][SIZE / 2][SIZE / 2] = 5;
+        return new byte[][][][]{full, blob, glow, corner, single, empty};
+    }
+
+    @After
+    public void disposePixmaps() {
+        for (Pixmap p : pixmaps) {
+            p.dispose();
+        }
+        pixmaps.clear();
+    }
+
+    /**
+     * Remembers pixmap so it is disposed after the test, even if the test fails.
+     */
+    private Pixmap disposeLater(Pixmap pixmap) {
+        pixmaps.add(pixmap);
+        return pixmap;
+    }
+
+    private static int[] pixels(Pixmap pixmap) {
+        final int w = pixmap.getWidth(), h = pixmap.getHeight();
+        final int[] pixels = new int[w * h];
+        for (int x = 0, i = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                pixels[i++] = pixmap.getPixel(x, y);
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    public void simpleRenderer() {
+        final SimpleRenderer reused = new SimpleRenderer(SIZE).palette(Coloring.AURORA);
+        disposeLater(reused.pixmap);
+        final byte[][][][] models = models();
+        for (int m = 0; m < models.length; m++) {
+            for (float angle : ANGLES) {
+                final int[] expected = pixels(disposeLater(new SimpleRenderer(SIZE).palette(Coloring.AURORA)
+                        .drawSplats(models[m], angle, materials)));
+                assertArrayEquals("model " + m + " at " + angle, expected,
+                        pixels(reused.drawSplats(models[m], angle, materials)));
+            }
+        }
+    }
+
+    @Test
+    public void angledRenderer() {
+        final AngledRenderer reused = new AngledRenderer(SIZE).palette(Coloring.AURORA);
+        disposeLater(reused.pixmap);
+        final byte[][][][] models = models();
+        for (int m = 0; m < models.length; m++) {
+            for (float angle : ANGLES) {
+                final int[] expected = pixels(disposeLater(new AngledRenderer(SIZE).palette(Coloring.AURORA)
+                        .drawSplats(models[m], angle, materials)));
+                assertArrayEquals("model " + m + " at " + angle, expected,
+                        pixels(reused.drawSplats(models[m], angle, materials)));
+            }
+        }
+    }
+
+    @Test
+    public void splatRenderer() {
+        final SplatRenderer reused = new SplatRenderer(SIZE).palette(Coloring.AURORA);
+        disposeLater(reused.pixmap);
+        final byte[][][][] models = models();
+        for (int m = 0; m < models.length; m++) {
+            for (float angle : ANGLES) {
+                final int[] expected = pixels(disposeLater(new SplatRenderer(SIZE).palette(Coloring.AURORA)
+                        .drawSplats(models[m], angle, materials)));
+                assertArrayEquals("model " + m + " at " + angle, expected,
+                        pixels(reused.drawSplats(models[m], angle, materials)));
+            }
+        }
+    }
+
+    @Test
+    public void smudgeRenderer() {
+        final byte[][][][] models = models();
+        for (int shrink = 0; shrink <= 2; shrink++) {
+            final SmudgeRenderer reused = new SmudgeRenderer(SIZE, shrink).palette(Coloring.AURORA);
+            disposeLater(reused.pixmap);
+            for (int m = 0; m < models.length; m++) {
+                for (float angle : ANGLES) {
+                    final int[] expected = pixels(disposeLater(new SmudgeRenderer(SIZE, shrink).palette(Coloring.AURORA)
+                            .drawSplats(models[m], angle, materials)));
+                    assertArrayEquals("shrink " + shrink + ", model " + m + " at " + angle, expected,
+                            pixels(reused.drawSplats(models[m], angle, materials)));
+                }
+            }
+        }
+    }
+
+    /**
+     * clear() is what a renderer pool calls before handing a renderer out again.
+     */
+    @Test
+    public void smudgeRendererAfterClear() {
+        final byte[][][][] models = models();
+        final SmudgeRenderer reused = new SmudgeRenderer(SIZE).palette(Coloring.AURORA);
+        disposeLater(reused.pixmap);
+        for (int m = 0; m < models.length; m++) {
+            final int[] expected = pixels(disposeLater(new SmudgeRenderer(SIZE).palette(Coloring.AURORA)
+                    .drawSplats(models[m], 0.2f, materials)));
+            reused.drawSplats(models[0], 0.7f, materials);
+            reused.clear();
+            assertArrayEquals("model " + m, expected, pixels(reused.drawSplats(models[m], 0.2f, materials)));
+        }
+    }
+}
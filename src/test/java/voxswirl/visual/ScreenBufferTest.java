@@ -0,0 +1,132 @@
+package voxswirl.visual;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link ScreenBuffer}'s flat channels against the jagged arrays they replaced, and clear() against clearAll().
+ */
+public class ScreenBufferTest {
+    private static final int[][] SIZES = {{1, 1}, {1, 7}, {7, 1}, {2, 3}, {13, 9}, {64, 65}, {129, 31}};
+
+    /**
+     * Each channel used to be a jagged [width][height] array; the flat arrays must keep the same memory order.
+     */
+    @Test
+    public void indexMatchesJaggedLayout() {
+        for (int[] size : SIZES) {
+            final int w = size[0], h = size[1];
+            final ScreenBuffer buffer = new ScreenBuffer(w, h);
+            final int[][] jagged = new int[w][h];
+            int flat = 0;
+            for (int x = 0; x < w; x++) {
+                for (int y = 0; y < h; y++) {
+                    jagged[x][y] = x * 31 + y * 17;
+                    assertEquals(w + "x" + h, flat++, buffer.index(x, y));
+                    buffer.depths[buffer.index(x, y)] = jagged[x][y];
+                }
+            }
+            for (int x = 0, i = 0; x < w; x++) {
+                for (int y = 0; y < h; y++) {
+                    assertEquals(jagged[x][y], buffer.depths[i++]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The empty values are what the renderers used to fill their jagged arrays with before drawing.
+     */
+    @Test
+    public void startsEmpty() {
+        for (int[] size : SIZES) {
+            final ScreenBuffer buffer = new ScreenBuffer(size[0], size[1]);
+            assertEquals(size[0] * size[1], buffer.depths.length);
+            assertEmpty(buffer);
+            assertTrue(buffer.isClean());
+        }
+    }
+
+    @Test
+    public void clearAllEmptiesEverything() {
+        final Random random = new Random(7);
+        for (int[] size : SIZES) {
+            final ScreenBuffer buffer = new ScreenBuffer(size[0], size[1]);
+            scribble(buffer, random, size[0] * size[1]);
+            buffer.clearAll();
+            assertEmpty(buffer);
+            assertTrue(buffer.isClean());
+        }
+    }
+
+    /**
+     * Writing anywhere in touched rectangles, or up to {@link ScreenBuffer#SPREAD} pixels around them, and then
+     * calling clear() must leave the same buffer as clearing all of it.
+     */
+    @Test
+    public void clearMatchesClearAll() {
+        final Random random = new Random(11);
+        for (int[] size : SIZES) {
+            final int w = size[0], h = size[1];
+            final ScreenBuffer buffer = new ScreenBuffer(w, h);
+            for (int round = 0; round < 20; round++) {
+                final int rects = random.nextInt(3);
+                for (int r = 0; r < rects; r++) {
+                    // may stick out past any edge, but always overlaps the buffer
+                    final int sx = random.nextInt(w + 2) - 2, sy = random.nextInt(h + 2) - 2;
+                    final int ex = Math.max(sx, 0) + random.nextInt(4), ey = Math.max(sy, 0) + random.nextInt(4);
+                    buffer.touch(sx, sy, ex, ey);
+                    final int spread = ScreenBuffer.SPREAD;
+                    for (int x = Math.max(sx - spread, 0); x <= Math.min(ex + spread, w - 1); x++) {
+                        for (int y = Math.max(sy - spread, 0); y <= Math.min(ey + spread, h - 1); y++) {
+                            if(random.nextBoolean()) write(buffer, random, buffer.index(x, y));
+                        }
+                    }
+                }
+                assertEquals(rects == 0, buffer.isClean());
+                buffer.clear();
+                assertEmpty(buffer);
+                assertTrue(buffer.isClean());
+            }
+        }
+    }
+
+    /**
+     * Writes random values to random pixels of every channel, without touching them.
+     */
+    private static void scribble(ScreenBuffer buffer, Random random, int count) {
+        final int n = buffer.width * buffer.height;
+        for (int i = 0; i < count; i++) {
+            write(buffer, random, random.nextInt(n));
+        }
+    }
+
+    /**
+     * Writes random values to pixel p of every channel.
+     */
+    private static void write(ScreenBuffer buffer, Random random, int p) {
+        buffer.depths[p] = random.nextInt(1000) + 1;
+        buffer.voxels[p] = random.nextInt(1 << 30);
+        buffer.render[p] = random.nextInt();
+        buffer.outlines[p] = random.nextInt();
+        buffer.colorL[p] = random.nextFloat();
+        buffer.colorA[p] = random.nextFloat();
+        buffer.colorB[p] = random.nextFloat();
+    }
+
+    private static void assertEmpty(ScreenBuffer buffer) {
+        final int n = buffer.width * buffer.height;
+        for (int i = 0; i < n; i++) {
+            assertEquals(0, buffer.depths[i]);
+            assertEquals(-1, buffer.voxels[i]);
+            assertEquals(0, buffer.render[i]);
+            assertEquals(0, buffer.outlines[i]);
+            assertEquals(-1f, buffer.colorL[i], 0f);
+            assertEquals(-1f, buffer.colorA[i], 0f);
+            assertEquals(-1f, buffer.colorB[i], 0f);
+        }
+    }
+}